@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
+import java.util.Map;
+import retrofit.http.Body;
+import retrofit.http.Field;
+import retrofit.http.FormUrlEncoded;
+import retrofit.http.GET;
+import retrofit.http.Header;
+import retrofit.http.Multipart;
+import retrofit.http.POST;
+import retrofit.http.Part;
+import retrofit.http.PartMap;
+import retrofit.http.Path;
+import retrofit.http.Query;
+
+/**
+ * A service whose methods each exercise a different mix of {@link RequestAction request actions}.
+ * Use {@link Fixtures#arguments(String)} for a representative set of arguments for each method.
+ */
+public interface BenchmarkService {
+  @GET("/")
+  Call<ResponseBody> none();
+
+  @GET("/v1/{tenant}/{bucket}/objects/{id}")
+  Call<ResponseBody> path(@Path("tenant") String tenant, @Path("bucket") String bucket,
+      @Path("id") String id);
+
+  @GET("/search")
+  Call<ResponseBody> query(@Query("q") String q, @Query("page") int page,
+      @Query("limit") int limit);
+
+  @GET("/items")
+  Call<ResponseBody> headers(@Header("Authorization") String authorization,
+      @Header("Accept-Language") String acceptLanguage);
+
+  @FormUrlEncoded
+  @POST("/form")
+  Call<ResponseBody> form(@Field("name") String name, @Field("email") String email,
+      @Field("message") String message);
+
+  @Multipart
+  @POST("/upload")
+  Call<ResponseBody> multipart(@Part("name") RequestBody name,
+      @PartMap Map<String, RequestBody> parts);
+
+  @POST("/body")
+  Call<ResponseBody> body(@Body RequestBody body);
+}
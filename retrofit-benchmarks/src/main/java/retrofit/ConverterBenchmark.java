@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.ResponseBody;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.simpleframework.xml.Default;
+import org.simpleframework.xml.DefaultType;
+import org.simpleframework.xml.ElementList;
+import org.simpleframework.xml.Root;
+
+/**
+ * Measures each converter in {@code retrofit-converters} in both directions. The request side
+ * includes writing the body to a sink so that lazily-serializing bodies are measured fairly.
+ * <p>
+ * Payloads scale with {@link #size} but are not byte-for-byte equivalent across formats. Compare
+ * results for one converter across changes rather than converters against each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+  private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+  @Param({ "gson", "jackson", "moshi", "simplexml", "protobuf", "wire" })
+  public String converter;
+
+  @Param({ "10", "1000" })
+  public int size;
+
+  private Converter<Object, RequestBody> requestConverter;
+  private Converter<ResponseBody, ?> responseConverter;
+  private Object value;
+  private MediaType contentType;
+  private byte[] encoded;
+  private final Buffer sink = new Buffer();
+
+  @SuppressWarnings("unchecked") // Each factory is asked for a converter of value's own type.
+  @Setup public void setUp() throws IOException {
+    Converter.Factory factory;
+    Type type;
+    switch (converter) {
+      case "gson":
+        factory = GsonConverterFactory.create();
+        type = Payload.class;
+        value = Payload.create(size);
+        break;
+      case "jackson":
+        factory = JacksonConverterFactory.create();
+        type = Payload.class;
+        value = Payload.create(size);
+        break;
+      case "moshi":
+        factory = MoshiConverterFactory.create();
+        type = Payload.class;
+        value = Payload.create(size);
+        break;
+      case "simplexml":
+        factory = SimpleXmlConverterFactory.create();
+        type = Payload.class;
+        value = Payload.create(size);
+        break;
+      case "protobuf":
+        factory = ProtoConverterFactory.create();
+        type = FileDescriptorProto.class;
+        value = protoPayload(size);
+        break;
+      case "wire":
+        factory = WireConverterFactory.create();
+        type = Phone.class;
+        value = wirePayload(size);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown converter: " + converter);
+    }
+
+    requestConverter =
+        (Converter<Object, RequestBody>) factory.toRequestBody(type, NO_ANNOTATIONS);
+    responseConverter = factory.fromResponseBody(type, NO_ANNOTATIONS);
+
+    RequestBody body = requestConverter.convert(value);
+    contentType = body.contentType();
+    Buffer buffer = new Buffer();
+    body.writeTo(buffer);
+    encoded = buffer.readByteArray();
+  }
+
+  @Benchmark public long requestBody() throws IOException {
+    RequestBody body = requestConverter.convert(value);
+    body.writeTo(sink);
+    long byteCount = sink.size();
+    sink.clear();
+    return byteCount;
+  }
+
+  @Benchmark public Object responseBody() throws IOException {
+    return responseConverter.convert(ResponseBody.create(contentType, encoded));
+  }
+
+  private static FileDescriptorProto protoPayload(int size) {
+    FileDescriptorProto.Builder file = FileDescriptorProto.newBuilder().setName("payload.proto");
+    for (int i = 0; i < size; i++) {
+      file.addMessageType(DescriptorProto.newBuilder()
+          .setName("Item" + i)
+          .addField(FieldDescriptorProto.newBuilder()
+              .setName("name")
+              .setNumber(1)
+              .setType(FieldDescriptorProto.Type.TYPE_STRING))
+          .addField(FieldDescriptorProto.newBuilder()
+              .setName("price")
+              .setNumber(2)
+              .setType(FieldDescriptorProto.Type.TYPE_DOUBLE)));
+    }
+    return file.build();
+  }
+
+  private static Phone wirePayload(int size) {
+    StringBuilder number = new StringBuilder(size * 10);
+    for (int i = 0; i < size; i++) {
+      number.append("555-0100, ");
+    }
+    return new Phone(number.toString());
+  }
+
+  @Root(name = "payload")
+  @Default(DefaultType.FIELD)
+  public static final class Payload {
+    @ElementList(inline = true, entry = "item")
+    public List<Item> items;
+
+    static Payload create(int size) {
+      Payload payload = new Payload();
+      payload.items = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        Item item = new Item();
+        item.id = i;
+        item.name = "Item number " + i;
+        item.price = i * 1.25d;
+        item.available = i % 2 == 0;
+        payload.items.add(item);
+      }
+      return payload;
+    }
+  }
+
+  @Root(name = "item")
+  @Default(DefaultType.FIELD)
+  public static final class Item {
+    public long id;
+    public String name;
+    public double price;
+    public boolean available;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.RequestBody;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Shared setup for the benchmarks in this module. */
+final class Fixtures {
+  private static final MediaType TEXT_PLAIN = MediaType.parse("text/plain; charset=UTF-8");
+
+  /** Create a {@link Retrofit} whose calls are answered in memory by {@code interceptor}. */
+  static Retrofit retrofit(InMemoryInterceptor interceptor) {
+    OkHttpClient client = new OkHttpClient();
+    client.interceptors().add(interceptor);
+    return new Retrofit.Builder()
+        .baseUrl("http://example.com/")
+        .client(client)
+        .build();
+  }
+
+  static Method method(String name) {
+    for (Method method : BenchmarkService.class.getDeclaredMethods()) {
+      if (method.getName().equals(name)) {
+        return method;
+      }
+    }
+    throw new IllegalArgumentException("No method named " + name);
+  }
+
+  /** Representative arguments for the service method named {@code name}. */
+  static Object[] arguments(String name) {
+    switch (name) {
+      case "none":
+        return new Object[0];
+      case "path":
+        return new Object[] { "acme", "photos", "2015-10-01 summer/beach.jpg" };
+      case "query":
+        return new Object[] { "red shoes", 3, 50 };
+      case "headers":
+        return new Object[] { "Bearer 0123456789abcdef", "en-US" };
+      case "form":
+        return new Object[] { "Jake Wharton", "jw@squareup.com", "Hello, world!" };
+      case "multipart":
+        Map<String, RequestBody> parts = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+          parts.put("part" + i, RequestBody.create(TEXT_PLAIN, "value" + i));
+        }
+        return new Object[] { RequestBody.create(TEXT_PLAIN, "avatar"), parts };
+      case "body":
+        return new Object[] { RequestBody.create(TEXT_PLAIN, "Hello, world!") };
+      default:
+        throw new IllegalArgumentException("No arguments for " + name);
+    }
+  }
+
+  private Fixtures() {
+    throw new AssertionError("No instances.");
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import java.io.IOException;
+
+/**
+ * An application interceptor which answers every request with a canned response instead of
+ * touching the network. This keeps benchmarks focused on Retrofit rather than on socket I/O.
+ */
+final class InMemoryInterceptor implements Interceptor {
+  private final int code;
+  private final MediaType contentType;
+  private final byte[] body;
+
+  InMemoryInterceptor(int code, MediaType contentType, byte[] body) {
+    this.code = code;
+    this.contentType = contentType;
+    this.body = body;
+  }
+
+  @Override public Response intercept(Chain chain) throws IOException {
+    return new Response.Builder()
+        .request(chain.request())
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .body(ResponseBody.create(contentType, body))
+        .build();
+  }
+}
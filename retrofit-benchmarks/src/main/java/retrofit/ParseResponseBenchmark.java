@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.ResponseBody;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link OkHttpCall#parseResponse} for successful and unsuccessful responses of varying
+ * size. Both buffer the body through the built-in {@link ResponseBody} converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseResponseBenchmark {
+  private static final MediaType JSON = MediaType.parse("application/json; charset=UTF-8");
+
+  @Param({ "200", "500" })
+  public int code;
+
+  @Param({ "128", "65536" })
+  public int size;
+
+  private OkHttpCall<ResponseBody> call;
+  private Request request;
+  private byte[] body;
+
+  @Setup public void setUp() {
+    Retrofit retrofit = Fixtures.retrofit(new InMemoryInterceptor(code, JSON, new byte[0]));
+    Method serviceMethod = Fixtures.method("none");
+    Converter<ResponseBody, ResponseBody> responseConverter =
+        retrofit.responseConverter(ResponseBody.class, new Annotation[0]);
+    RequestFactory requestFactory = RequestFactoryParser.parse(serviceMethod,
+        ResponseBody.class, retrofit);
+    call = new OkHttpCall<>(retrofit.client(), requestFactory, responseConverter, new Object[0],
+        null, null, Long.MAX_VALUE, null, null, null);
+    request = requestFactory.create();
+
+    body = new byte[size];
+    Arrays.fill(body, (byte) 'a');
+  }
+
+  @Benchmark public Object parseResponse() throws IOException {
+    com.squareup.okhttp.Response rawResponse = new com.squareup.okhttp.Response.Builder()
+        .request(request)
+        .protocol(Protocol.HTTP_1_1)
+        .code(code)
+        .body(ResponseBody.create(JSON, body))
+        .build();
+    return call.parseResponse(rawResponse);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.HttpUrl;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RequestBuilder} directly, without the {@link RequestAction} indirection, for URL
+ * shapes which hit the fast (nothing to encode) and slow (percent-encoding) paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuilderBenchmark {
+  private static final UrlTemplate STATIC_URL = UrlTemplate.parse("/v1/status");
+  private static final UrlTemplate RELATIVE_URL =
+      UrlTemplate.parse("/v1/{tenant}/{bucket}/objects/{id}");
+  private static final int TENANT = RELATIVE_URL.slotOf("tenant");
+  private static final int BUCKET = RELATIVE_URL.slotOf("bucket");
+  private static final int ID = RELATIVE_URL.slotOf("id");
+
+  private final HttpUrl baseUrl = HttpUrl.parse("http://example.com/");
+  private final ResolvedUrl statusUrl = new ResolvedUrl(baseUrl, STATIC_URL);
+  private final ResolvedUrl objectUrl = new ResolvedUrl(baseUrl, RELATIVE_URL);
+
+  @Benchmark public Object staticUrl() {
+    return new RequestBuilder("GET", statusUrl, null, null, false, false, false).build();
+  }
+
+  @Benchmark public Object pathParameters() {
+    RequestBuilder builder =
+        new RequestBuilder("GET", objectUrl, null, null, false, false, false);
+    builder.addPathParam(TENANT, "acme", false);
+    builder.addPathParam(BUCKET, "photos", false);
+    builder.addPathParam(ID, "1234", false);
+    return builder.build();
+  }
+
+  @Benchmark public Object pathParametersEncoded() {
+    RequestBuilder builder =
+        new RequestBuilder("GET", objectUrl, null, null, false, false, false);
+    builder.addPathParam(TENANT, "acme corp", false);
+    builder.addPathParam(BUCKET, "fotos/été", false);
+    builder.addPathParam(ID, "100% {done}?", false);
+    return builder.build();
+  }
+
+  @Benchmark public Object pathAndQueryParameters() {
+    RequestBuilder builder =
+        new RequestBuilder("GET", objectUrl, null, null, false, false, false);
+    builder.addPathParam(TENANT, "acme", false);
+    builder.addPathParam(BUCKET, "photos", false);
+    builder.addPathParam(ID, "1234", false);
+    builder.addQueryParam("fields", "name,size", false);
+    builder.addQueryParam("page", "3", false);
+    return builder.build();
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.MediaType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RequestFactory#create} for each method of {@link BenchmarkService}, each of which
+ * uses a different mix of {@link RequestAction request actions}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestFactoryBenchmark {
+  @Param({ "none", "path", "query", "headers", "form", "multipart", "body" })
+  public String method;
+
+  private RequestFactory requestFactory;
+  private Object[] args;
+
+  @Setup public void setUp() {
+    MediaType contentType = MediaType.parse("text/plain; charset=UTF-8");
+    Retrofit retrofit = Fixtures.retrofit(new InMemoryInterceptor(200, contentType, new byte[0]));
+    Method serviceMethod = Fixtures.method(method);
+    requestFactory = RequestFactoryParser.parse(serviceMethod,
+        Utils.getCallResponseType(serviceMethod.getGenericReturnType()), retrofit);
+    args = Fixtures.arguments(method);
+  }
+
+  @Benchmark public Object create() {
+    return requestFactory.create(args);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.MediaType;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of getting from a service interface method to a {@link Call}: proxy dispatch
+ * through {@link Retrofit#create}, the method handler cache lookup, and a full in-memory execution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceMethodBenchmark {
+  private Retrofit retrofit;
+  private BenchmarkService service;
+  private Method method;
+
+  @Setup public void setUp() {
+    MediaType contentType = MediaType.parse("text/plain; charset=UTF-8");
+    retrofit = Fixtures.retrofit(new InMemoryInterceptor(200, contentType, new byte[0]));
+    service = retrofit.create(BenchmarkService.class);
+    method = Fixtures.method("path");
+    retrofit.loadMethodHandler(method); // Warm the cache so hits are measured.
+  }
+
+  @Benchmark public Object proxyDispatch() {
+    return service.path("acme", "photos", "1234");
+  }
+
+  @Benchmark public Object loadMethodHandler() {
+    return retrofit.loadMethodHandler(method);
+  }
+
+  @Benchmark public Object execute() throws IOException {
+    return service.path("acme", "photos", "1234").execute();
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.compiler;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import retrofit.http.DELETE;
+import retrofit.http.GET;
+import retrofit.http.HEAD;
+import retrofit.http.HTTP;
+import retrofit.http.OPTIONS;
+import retrofit.http.PATCH;
+import retrofit.http.POST;
+import retrofit.http.PUT;
+
+import static javax.lang.model.element.Modifier.ABSTRACT;
+import static javax.lang.model.element.Modifier.FINAL;
+import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.PUBLIC;
+
+/**
+ * Generates an implementation of each service interface at compile time. {@code Retrofit.create}
+ * uses the generated class, when present, instead of creating a {@link java.lang.reflect.Proxy}.
+ * This avoids reflective dispatch and the method handler cache lookup on every call.
+ * <p>
+ * For a service interface {@code com.example.Service} the generated class is
+ * {@code com.example.Service$$RetrofitImpl}. Interfaces which are private or have type parameters
+ * are skipped and continue to use a proxy.
+ */
+public final class RetrofitProcessor extends AbstractProcessor {
+  static final String SUFFIX = "$$RetrofitImpl";
+
+  private static final List<Class<? extends Annotation>> HTTP_ANNOTATIONS = Arrays.asList(
+      DELETE.class, GET.class, HEAD.class, HTTP.class, OPTIONS.class, PATCH.class, POST.class,
+      PUT.class);
+  private static final ClassName RETROFIT = ClassName.get("retrofit", "Retrofit");
+  private static final ClassName METHOD_BINDING = ClassName.get("retrofit", "MethodBinding");
+
+  private Elements elements;
+  private Types types;
+  private Filer filer;
+  private Messager messager;
+
+  @Override public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    elements = processingEnv.getElementUtils();
+    types = processingEnv.getTypeUtils();
+    filer = processingEnv.getFiler();
+    messager = processingEnv.getMessager();
+  }
+
+  @Override public Set<String> getSupportedAnnotationTypes() {
+    Set<String> annotationTypes = new LinkedHashSet<>();
+    for (Class<? extends Annotation> annotation : HTTP_ANNOTATIONS) {
+      annotationTypes.add(annotation.getCanonicalName());
+    }
+    return annotationTypes;
+  }
+
+  @Override public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+    Set<TypeElement> services = new LinkedHashSet<>();
+    for (Class<? extends Annotation> annotation : HTTP_ANNOTATIONS) {
+      for (Element element : env.getElementsAnnotatedWith(annotation)) {
+        Element enclosing = element.getEnclosingElement();
+        if (enclosing.getKind() == ElementKind.INTERFACE) {
+          services.add((TypeElement) enclosing);
+        }
+      }
+    }
+
+    for (TypeElement service : services) {
+      if (!isSupported(service)) {
+        continue;
+      }
+      try {
+        brewJava(service).writeTo(filer);
+      } catch (IOException e) {
+        error(service, "Unable to write implementation for %s: %s", service, e.getMessage());
+      }
+    }
+
+    // Other processors may also be interested in the HTTP annotations.
+    return false;
+  }
+
+  private boolean isSupported(TypeElement service) {
+    if (!service.getInterfaces().isEmpty()) {
+      error(service, "API interfaces must not extend other interfaces.");
+      return false;
+    }
+    if (!service.getTypeParameters().isEmpty()) {
+      warning(service, "Skipping %s: interfaces with type parameters use a proxy.", service);
+      return false;
+    }
+    for (Element element = service; element instanceof TypeElement;
+        element = element.getEnclosingElement()) {
+      if (element.getModifiers().contains(PRIVATE)) {
+        warning(service, "Skipping %s: private interfaces use a proxy.", service);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private JavaFile brewJava(TypeElement service) {
+    String packageName = elements.getPackageOf(service).getQualifiedName().toString();
+    String binaryName = elements.getBinaryName(service).toString();
+    String simpleName = packageName.isEmpty()
+        ? binaryName
+        : binaryName.substring(packageName.length() + 1);
+    ClassName serviceName = ClassName.get(service);
+
+    TypeSpec.Builder type = TypeSpec.classBuilder(simpleName + SUFFIX)
+        .addModifiers(PUBLIC, FINAL)
+        .addSuperinterface(serviceName)
+        .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+            .addMember("value", "$S", "unchecked")
+            .build())
+        .addOriginatingElement(service);
+
+    MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+        .addModifiers(PUBLIC)
+        .addParameter(RETROFIT, "retrofit");
+
+    int index = 0;
+    for (ExecutableElement method : ElementFilter.methodsIn(service.getEnclosedElements())) {
+      if (!method.getModifiers().contains(ABSTRACT)) {
+        continue; // Default and static methods keep their own implementation.
+      }
+
+      FieldSpec binding = FieldSpec.builder(METHOD_BINDING, "m" + index++, PRIVATE, FINAL).build();
+      type.addField(binding);
+
+      List<Object> args = new ArrayList<>();
+      StringBuilder format = new StringBuilder("this.$N = $T.bind(retrofit, $T.class, $S");
+      args.addAll(Arrays.asList(binding, METHOD_BINDING, serviceName,
+          method.getSimpleName().toString()));
+      for (VariableElement parameter : method.getParameters()) {
+        format.append(", $T.class");
+        args.add(TypeName.get(types.erasure(parameter.asType())));
+      }
+      constructor.addStatement(format.append(')').toString(), args.toArray());
+
+      type.addMethod(brewMethod(method, binding));
+    }
+
+    type.addMethod(constructor.build());
+    return JavaFile.builder(packageName, type.build())
+        .addFileComment("Generated by retrofit-compiler. Do not modify!")
+        .build();
+  }
+
+  private MethodSpec brewMethod(ExecutableElement method, FieldSpec binding) {
+    MethodSpec.Builder builder = MethodSpec.methodBuilder(method.getSimpleName().toString())
+        .addAnnotation(Override.class)
+        .addModifiers(PUBLIC)
+        .varargs(method.isVarArgs());
+    for (TypeParameterElement typeParameter : method.getTypeParameters()) {
+      builder.addTypeVariable(TypeVariableName.get((TypeVariable) typeParameter.asType()));
+    }
+    for (TypeMirror thrownType : method.getThrownTypes()) {
+      builder.addException(TypeName.get(thrownType));
+    }
+
+    List<String> names = new ArrayList<>();
+    for (VariableElement parameter : method.getParameters()) {
+      String name = parameter.getSimpleName().toString();
+      builder.addParameter(ParameterSpec.builder(TypeName.get(parameter.asType()), name).build());
+      names.add(name);
+    }
+
+    // Arguments are always passed as an explicit array so that a single array-typed argument is
+    // not mistaken for the varargs array itself.
+    List<Object> args = new ArrayList<>();
+    String invoke;
+    args.add(binding);
+    if (names.isEmpty()) {
+      invoke = "this.$N.invoke()";
+    } else {
+      invoke = "this.$N.invoke(new Object[] { $L })";
+      args.add(join(", ", names));
+    }
+
+    TypeMirror returnType = method.getReturnType();
+    builder.returns(TypeName.get(returnType));
+    if (returnType.getKind() == TypeKind.VOID) {
+      // Retrofit rejects void methods when invoked. Defer to it for the same error as a proxy.
+      builder.addStatement(invoke, args.toArray());
+    } else {
+      TypeMirror castType = returnType.getKind().isPrimitive()
+          ? types.boxedClass((PrimitiveType) returnType).asType()
+          : returnType;
+      args.add(0, TypeName.get(castType));
+      builder.addStatement("return ($T) " + invoke, args.toArray());
+    }
+    return builder.build();
+  }
+
+  private static String join(String separator, List<String> parts) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0, size = parts.size(); i < size; i++) {
+      if (i > 0) builder.append(separator);
+      builder.append(parts.get(i));
+    }
+    return builder.toString();
+  }
+
+  private void error(Element element, String message, Object... args) {
+    messager.printMessage(Diagnostic.Kind.ERROR, String.format(message, args), element);
+  }
+
+  private void warning(Element element, String message, Object... args) {
+    messager.printMessage(Diagnostic.Kind.WARNING, String.format(message, args), element);
+  }
+}
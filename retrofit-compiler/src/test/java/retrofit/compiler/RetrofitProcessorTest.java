@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.compiler;
+
+import com.google.common.base.Joiner;
+import javax.tools.JavaFileObject;
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.JavaFileObjects.forSourceString;
+import static com.google.testing.compile.JavaSourceSubjectFactory.javaSource;
+
+public final class RetrofitProcessorTest {
+  @Test public void generatesImplementation() {
+    JavaFileObject source = forSourceString("test.Service", Joiner.on('\n').join(
+        "package test;",
+        "import com.squareup.okhttp.ResponseBody;",
+        "import retrofit.Call;",
+        "import retrofit.http.GET;",
+        "import retrofit.http.Path;",
+        "interface Service {",
+        "  @GET(\"/\") Call<ResponseBody> none();",
+        "  @GET(\"/{a}/{b}\") Call<ResponseBody> two(@Path(\"a\") String a, @Path(\"b\") int b);",
+        "}"));
+
+    JavaFileObject expected = forSourceString("test.Service$$RetrofitImpl", Joiner.on('\n').join(
+        "package test;",
+        "import com.squareup.okhttp.ResponseBody;",
+        "import java.lang.Override;",
+        "import java.lang.String;",
+        "import java.lang.SuppressWarnings;",
+        "import retrofit.Call;",
+        "import retrofit.MethodBinding;",
+        "import retrofit.Retrofit;",
+        "@SuppressWarnings(\"unchecked\")",
+        "public final class Service$$RetrofitImpl implements Service {",
+        "  private final MethodBinding m0;",
+        "  private final MethodBinding m1;",
+        "  public Service$$RetrofitImpl(Retrofit retrofit) {",
+        "    this.m0 = MethodBinding.bind(retrofit, Service.class, \"none\");",
+        "    this.m1 = MethodBinding.bind(retrofit, Service.class, \"two\", String.class,",
+        "        int.class);",
+        "  }",
+        "  @Override public Call<ResponseBody> none() {",
+        "    return (Call<ResponseBody>) this.m0.invoke();",
+        "  }",
+        "  @Override public Call<ResponseBody> two(String a, int b) {",
+        "    return (Call<ResponseBody>) this.m1.invoke(new Object[] { a, b });",
+        "  }",
+        "}"));
+
+    assertAbout(javaSource()).that(source)
+        .processedWith(new RetrofitProcessor())
+        .compilesWithoutError()
+        .and()
+        .generatesSources(expected);
+  }
+
+  @Test public void nestedInterfaceUsesBinaryName() {
+    JavaFileObject source = forSourceString("test.Outer", Joiner.on('\n').join(
+        "package test;",
+        "import com.squareup.okhttp.ResponseBody;",
+        "import retrofit.Call;",
+        "import retrofit.http.GET;",
+        "final class Outer {",
+        "  interface Service {",
+        "    @GET(\"/\") Call<ResponseBody> get();",
+        "  }",
+        "}"));
+
+    JavaFileObject expected = forSourceString("test.Outer$Service$$RetrofitImpl",
+        Joiner.on('\n').join(
+            "package test;",
+            "import com.squareup.okhttp.ResponseBody;",
+            "import java.lang.Override;",
+            "import java.lang.SuppressWarnings;",
+            "import retrofit.Call;",
+            "import retrofit.MethodBinding;",
+            "import retrofit.Retrofit;",
+            "@SuppressWarnings(\"unchecked\")",
+            "public final class Outer$Service$$RetrofitImpl implements Outer.Service {",
+            "  private final MethodBinding m0;",
+            "  public Outer$Service$$RetrofitImpl(Retrofit retrofit) {",
+            "    this.m0 = MethodBinding.bind(retrofit, Outer.Service.class, \"get\");",
+            "  }",
+            "  @Override public Call<ResponseBody> get() {",
+            "    return (Call<ResponseBody>) this.m0.invoke();",
+            "  }",
+            "}"));
+
+    assertAbout(javaSource()).that(source)
+        .processedWith(new RetrofitProcessor())
+        .compilesWithoutError()
+        .and()
+        .generatesSources(expected);
+  }
+
+  @Test public void extendingInterfaceFails() {
+    JavaFileObject source = forSourceString("test.Service", Joiner.on('\n').join(
+        "package test;",
+        "import com.squareup.okhttp.ResponseBody;",
+        "import retrofit.Call;",
+        "import retrofit.http.GET;",
+        "interface Service extends Runnable {",
+        "  @GET(\"/\") Call<ResponseBody> get();",
+        "}"));
+
+    assertAbout(javaSource()).that(source)
+        .processedWith(new RetrofitProcessor())
+        .failsToCompile()
+        .withErrorContaining("API interfaces must not extend other interfaces.");
+  }
+
+  @Test public void privateInterfaceSkipped() {
+    JavaFileObject source = forSourceString("test.Outer", Joiner.on('\n').join(
+        "package test;",
+        "import com.squareup.okhttp.ResponseBody;",
+        "import retrofit.Call;",
+        "import retrofit.http.GET;",
+        "final class Outer {",
+        "  private interface Service {",
+        "    @GET(\"/\") Call<ResponseBody> get();",
+        "  }",
+        "}"));
+
+    assertAbout(javaSource()).that(source)
+        .processedWith(new RetrofitProcessor())
+        .compilesWithoutError();
+  }
+}
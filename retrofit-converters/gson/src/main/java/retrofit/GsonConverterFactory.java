@@ -45,14 +45,29 @@ public final class GsonConverterFactory extends Converter.Factory {
    * decoding from JSON (when no charset is specified by a header) will use UTF-8.
    */
   public static GsonConverterFactory create(Gson gson) {
-    return new GsonConverterFactory(gson);
+    return new GsonConverterFactory(gson, false);
   }
 
   private final Gson gson;
+  private final boolean streaming;
 
-  private GsonConverterFactory(Gson gson) {
+  private GsonConverterFactory(Gson gson, boolean streaming) {
     if (gson == null) throw new NullPointerException("gson == null");
     this.gson = gson;
+    this.streaming = streaming;
+  }
+
+  /**
+   * Return a new factory whose request bodies serialize their value as they are written to the
+   * connection rather than when the request is created. This avoids holding a complete copy of
+   * large bodies in memory. The length of these bodies is unknown so they are sent chunked.
+   * <p>
+   * The value is serialized each time the body is written, such as on a retry or redirect, and
+   * must not be modified until the call completes. Serialization failures are reported to the
+   * call as an I/O failure instead of being thrown when the call is created.
+   */
+  public GsonConverterFactory withStreamingRequestBodies() {
+    return new GsonConverterFactory(gson, true);
   }
 
   @Override
@@ -63,6 +78,6 @@ public final class GsonConverterFactory extends Converter.Factory {
 
   @Override public Converter<?, RequestBody> toRequestBody(Type type, Annotation[] annotations) {
     TypeAdapter<?> adapter = gson.getAdapter(TypeToken.get(type));
-    return new GsonRequestBodyConverter<>(gson, adapter);
+    return new GsonRequestBodyConverter<>(gson, adapter, streaming);
   }
 }
@@ -24,7 +24,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
-import okio.Buffer;
+import okio.BufferedSink;
 
 final class GsonRequestBodyConverter<T> implements Converter<T, RequestBody> {
   private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
@@ -32,22 +32,58 @@ final class GsonRequestBodyConverter<T> implements Converter<T, RequestBody> {
 
   private final Gson gson;
   private final TypeAdapter<T> adapter;
+  private final boolean streaming;
 
-  GsonRequestBodyConverter(Gson gson, TypeAdapter<T> adapter) {
+  GsonRequestBodyConverter(Gson gson, TypeAdapter<T> adapter, boolean streaming) {
     this.gson = gson;
     this.adapter = adapter;
+    this.streaming = streaming;
   }
 
   @Override public RequestBody convert(T value) throws IOException {
-    Buffer buffer = new Buffer();
-    Writer writer = new OutputStreamWriter(buffer.outputStream(), UTF_8);
-    JsonWriter jsonWriter = gson.newJsonWriter(writer);
+    if (streaming) {
+      return new StreamingRequestBody<>(gson, adapter, value);
+    }
+    BufferPool.Lease lease = BufferPool.acquire();
     try {
+      JsonWriter jsonWriter = gson.newJsonWriter(lease.writer());
       adapter.write(jsonWriter, value);
       jsonWriter.flush();
+      return RequestBody.create(MEDIA_TYPE, lease.readByteString());
     } catch (IOException e) {
       throw new AssertionError(e); // Writing to Buffer does no I/O.
+    } finally {
+      lease.release();
+    }
+  }
+
+  /** Serializes its value each time it is written, directly to the sink. */
+  static final class StreamingRequestBody<T> extends RequestBody {
+    private final Gson gson;
+    private final TypeAdapter<T> adapter;
+    private final T value;
+
+    StreamingRequestBody(Gson gson, TypeAdapter<T> adapter, T value) {
+      this.gson = gson;
+      this.adapter = adapter;
+      this.value = value;
+    }
+
+    @Override public MediaType contentType() {
+      return MEDIA_TYPE;
+    }
+
+    @Override public void writeTo(BufferedSink sink) throws IOException {
+      Writer writer = new OutputStreamWriter(sink.outputStream(), UTF_8);
+      JsonWriter jsonWriter = gson.newJsonWriter(writer);
+      try {
+        adapter.write(jsonWriter, value);
+      } catch (RuntimeException e) {
+        // Report serialization failures to the call. Unchecked exceptions would escape the HTTP
+        // client's dispatcher and the callback would never be invoked.
+        throw new IOException("Unable to serialize " + value.getClass().getName(), e);
+      }
+      jsonWriter.flush();
     }
-    return RequestBody.create(MEDIA_TYPE, buffer.readByteString());
   }
 }
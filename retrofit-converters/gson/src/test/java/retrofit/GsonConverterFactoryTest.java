@@ -25,13 +25,17 @@ import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import retrofit.http.Body;
 import retrofit.http.POST;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public final class GsonConverterFactoryTest {
   interface AnInterface {
@@ -77,11 +81,13 @@ public final class GsonConverterFactoryTest {
   interface Service {
     @POST("/") Call<AnImplementation> anImplementation(@Body AnImplementation impl);
     @POST("/") Call<AnInterface> anInterface(@Body AnInterface impl);
+    @POST("/") Call<AnInterface> aDouble(@Body Double value);
   }
 
   @Rule public final MockWebServer server = new MockWebServer();
 
   private Service service;
+  private Service streamingService;
 
   @Before public void setUp() {
     Gson gson = new GsonBuilder()
@@ -92,6 +98,11 @@ public final class GsonConverterFactoryTest {
         .addConverterFactory(GsonConverterFactory.create(gson))
         .build();
     service = retrofit.create(Service.class);
+    Retrofit streamingRetrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(GsonConverterFactory.create(gson).withStreamingRequestBodies())
+        .build();
+    streamingService = streamingRetrofit.create(Service.class);
   }
 
   @Test public void anInterface() throws IOException, InterruptedException {
@@ -129,4 +140,42 @@ public final class GsonConverterFactoryTest {
     assertThat(request.getBody().readUtf8()).isEqualTo("{}"); // Null value was not serialized.
     assertThat(request.getHeader("Content-Type")).isEqualTo("application/json; charset=UTF-8");
   }
+
+  @Test public void streamingRequestBody() throws IOException, InterruptedException {
+    server.enqueue(new MockResponse().setBody("{\"name\":\"value\"}"));
+
+    Call<AnInterface> call = streamingService.anInterface(new AnImplementation("value"));
+    Response<AnInterface> response = call.execute();
+    AnInterface body = response.body();
+    assertThat(body.getName()).isEqualTo("value");
+
+    RecordedRequest request = server.takeRequest();
+    assertThat(request.getBody().readUtf8()).isEqualTo("{\"name\":\"value\"}");
+    assertThat(request.getHeader("Content-Type")).isEqualTo("application/json; charset=UTF-8");
+    assertThat(request.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+  }
+
+  @Test public void streamingRequestBodySerializationFailureIsReportedAsync()
+      throws InterruptedException {
+    server.enqueue(new MockResponse());
+
+    final AtomicReference<Throwable> failureRef = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    streamingService.aDouble(Double.NaN).enqueue(new Callback<AnInterface>() {
+      @Override public void onResponse(Response<AnInterface> response) {
+        latch.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        failureRef.set(t);
+        latch.countDown();
+      }
+    });
+    assertTrue(latch.await(10, SECONDS));
+
+    Throwable failure = failureRef.get();
+    assertThat(failure).isInstanceOf(IOException.class)
+        .hasMessage("Unable to serialize java.lang.Double");
+    assertThat(failure.getCause()).isInstanceOf(IllegalArgumentException.class);
+  }
 }
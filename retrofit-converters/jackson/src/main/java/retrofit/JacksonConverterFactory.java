@@ -40,14 +40,29 @@ public final class JacksonConverterFactory extends Converter.Factory {
 
   /** Create an instance using {@code mapper} for conversion. */
   public static JacksonConverterFactory create(ObjectMapper mapper) {
-    return new JacksonConverterFactory(mapper);
+    return new JacksonConverterFactory(mapper, false);
   }
 
   private final ObjectMapper mapper;
+  private final boolean streaming;
 
-  private JacksonConverterFactory(ObjectMapper mapper) {
+  private JacksonConverterFactory(ObjectMapper mapper, boolean streaming) {
     if (mapper == null) throw new NullPointerException("mapper == null");
     this.mapper = mapper;
+    this.streaming = streaming;
+  }
+
+  /**
+   * Return a new factory whose request bodies serialize their value with a {@code JsonGenerator}
+   * as they are written to the connection rather than into a byte array when the request is
+   * created. The length of these bodies is unknown so they are sent chunked.
+   * <p>
+   * The value is serialized each time the body is written, such as on a retry or redirect, and
+   * must not be modified until the call completes. Serialization failures are reported to the
+   * call as an I/O failure instead of being thrown when the call is created.
+   */
+  public JacksonConverterFactory withStreamingRequestBodies() {
+    return new JacksonConverterFactory(mapper, true);
   }
 
   @Override
@@ -60,6 +75,6 @@ public final class JacksonConverterFactory extends Converter.Factory {
   @Override public Converter<?, RequestBody> toRequestBody(Type type, Annotation[] annotations) {
     JavaType javaType = mapper.getTypeFactory().constructType(type);
     ObjectWriter writer = mapper.writerWithType(javaType);
-    return new JacksonRequestBodyConverter<>(writer);
+    return new JacksonRequestBodyConverter<>(writer, streaming);
   }
 }
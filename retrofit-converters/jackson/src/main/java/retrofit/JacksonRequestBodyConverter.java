@@ -15,22 +15,57 @@
  */
 package retrofit;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.RequestBody;
 import java.io.IOException;
+import okio.BufferedSink;
 
 final class JacksonRequestBodyConverter<T> implements Converter<T, RequestBody> {
   private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
 
   private final ObjectWriter adapter;
+  private final boolean streaming;
 
-  JacksonRequestBodyConverter(ObjectWriter adapter) {
+  JacksonRequestBodyConverter(ObjectWriter adapter, boolean streaming) {
     this.adapter = adapter;
+    this.streaming = streaming;
   }
 
   @Override public RequestBody convert(T value) throws IOException {
+    if (streaming) {
+      return new StreamingRequestBody(adapter, value);
+    }
     byte[] bytes = adapter.writeValueAsBytes(value);
     return RequestBody.create(MEDIA_TYPE, bytes);
   }
+
+  /** Serializes its value each time it is written, directly to the sink. */
+  static final class StreamingRequestBody extends RequestBody {
+    private final ObjectWriter adapter;
+    private final Object value;
+
+    StreamingRequestBody(ObjectWriter adapter, Object value) {
+      this.adapter = adapter;
+      this.value = value;
+    }
+
+    @Override public MediaType contentType() {
+      return MEDIA_TYPE;
+    }
+
+    @Override public void writeTo(BufferedSink sink) throws IOException {
+      JsonGenerator generator =
+          adapter.getFactory().createGenerator(sink.outputStream(), JsonEncoding.UTF8);
+      // The sink is owned by OkHttp. Closing the generator only releases its buffers.
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      try {
+        adapter.writeValue(generator, value);
+      } finally {
+        generator.close();
+      }
+    }
+  }
 }
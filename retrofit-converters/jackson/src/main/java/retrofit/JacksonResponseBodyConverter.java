@@ -16,11 +16,17 @@
 package retrofit;
 
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.ResponseBody;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.charset.Charset;
 
 final class JacksonResponseBodyConverter<T> implements Converter<ResponseBody, T> {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   private final ObjectReader adapter;
 
   JacksonResponseBodyConverter(ObjectReader adapter) {
@@ -28,15 +34,31 @@ final class JacksonResponseBodyConverter<T> implements Converter<ResponseBody, T
   }
 
   @Override public T convert(ResponseBody value) throws IOException {
+    MediaType contentType = value.contentType();
+    Charset charset = contentType != null ? contentType.charset() : null;
+    if (charset == null || UTF_8.equals(charset)) {
+      // Jackson parses UTF-8 bytes directly, which is faster than decoding to chars first.
+      InputStream is = value.byteStream();
+      try {
+        return adapter.readValue(is);
+      } finally {
+        closeQuietly(is);
+      }
+    }
+
     Reader reader = value.charStream();
     try {
       return adapter.readValue(reader);
     } finally {
-      if (reader != null) {
-        try {
-          reader.close();
-        } catch (IOException ignored) {
-        }
+      closeQuietly(reader);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException ignored) {
       }
     }
   }
@@ -30,6 +30,8 @@ import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import okio.Buffer;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -39,6 +41,8 @@ import retrofit.http.POST;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class JacksonConverterFactoryTest {
+  private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
   interface AnInterface {
     String getName();
   }
@@ -105,6 +109,7 @@ public class JacksonConverterFactoryTest {
   @Rule public final MockWebServer server = new MockWebServer();
 
   private Service service;
+  private Service streamingService;
 
   @Before public void setUp() {
     SimpleModule module = new SimpleModule();
@@ -124,6 +129,11 @@ public class JacksonConverterFactoryTest {
         .addConverterFactory(JacksonConverterFactory.create(mapper))
         .build();
     service = retrofit.create(Service.class);
+    Retrofit streamingRetrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(JacksonConverterFactory.create(mapper).withStreamingRequestBodies())
+        .build();
+    streamingService = streamingRetrofit.create(Service.class);
   }
 
   @Test public void anInterface() throws IOException, InterruptedException {
@@ -152,4 +162,38 @@ public class JacksonConverterFactoryTest {
     assertThat(request.getBody().readUtf8()).isEqualTo("{\"name\":\"value\"}");
     assertThat(request.getHeader("Content-Type")).isEqualTo("application/json; charset=UTF-8");
   }
+
+  @Test public void streamingRequestBody() throws IOException, InterruptedException {
+    server.enqueue(new MockResponse().setBody("{\"name\":\"value\"}"));
+
+    Call<AnInterface> call = streamingService.anInterface(new AnImplementation("value"));
+    Response<AnInterface> response = call.execute();
+    AnInterface body = response.body();
+    assertThat(body.getName()).isEqualTo("value");
+
+    RecordedRequest request = server.takeRequest();
+    assertThat(request.getBody().readUtf8()).isEqualTo("{\"name\":\"value\"}");
+    assertThat(request.getHeader("Content-Type")).isEqualTo("application/json; charset=UTF-8");
+    assertThat(request.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+  }
+
+  @Test public void utf8ResponseBody() throws IOException {
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json; charset=UTF-8")
+        .setBody(new Buffer().writeUtf8("{\"name\":\"\u00e9\u20ac\ud83c\udf69\"}")));
+
+    Call<AnInterface> call = service.anInterface(new AnImplementation("value"));
+    Response<AnInterface> response = call.execute();
+    assertThat(response.body().getName()).isEqualTo("\u00e9\u20ac\ud83c\udf69");
+  }
+
+  @Test public void nonUtf8ResponseBody() throws IOException {
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json; charset=ISO-8859-1")
+        .setBody(new Buffer().writeString("{\"name\":\"caf\u00e9\"}", ISO_8859_1)));
+
+    Call<AnInterface> call = service.anInterface(new AnImplementation("value"));
+    Response<AnInterface> response = call.execute();
+    assertThat(response.body().getName()).isEqualTo("caf\u00e9");
+  }
 }
@@ -18,13 +18,10 @@ package retrofit;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.RequestBody;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import okio.Buffer;
 import org.simpleframework.xml.Serializer;
 
 final class SimpleXmlRequestBodyConverter<T> implements Converter<T, RequestBody> {
   private static final MediaType MEDIA_TYPE = MediaType.parse("application/xml; charset=UTF-8");
-  private static final String CHARSET = "UTF-8";
 
   private final Serializer serializer;
 
@@ -33,14 +30,14 @@ final class SimpleXmlRequestBodyConverter<T> implements Converter<T, RequestBody
   }
 
   @Override public RequestBody convert(T value) throws IOException {
-    Buffer buffer = new Buffer();
+    BufferPool.Lease lease = BufferPool.acquire();
     try {
-      OutputStreamWriter osw = new OutputStreamWriter(buffer.outputStream(), CHARSET);
-      serializer.write(value, osw);
-      osw.flush();
+      serializer.write(value, lease.writer());
+      return RequestBody.create(MEDIA_TYPE, lease.readByteString());
     } catch (Exception e) {
       throw new RuntimeException(e);
+    } finally {
+      lease.release();
     }
-    return RequestBody.create(MEDIA_TYPE, buffer.readByteString());
   }
 }
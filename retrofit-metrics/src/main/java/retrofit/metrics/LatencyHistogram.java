@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets whose upper bounds are powers of two nanoseconds. Percentiles are
+ * therefore accurate to within a factor of two, which is enough to tell a slow phase from a fast
+ * one. Recording is lock-free.
+ */
+public final class LatencyHistogram {
+  private static final int BUCKET_COUNT = 64;
+
+  /** Bucket {@code i} counts durations in {@code [2^(i-1), 2^i)} nanoseconds. */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  LatencyHistogram() {
+  }
+
+  void record(long nanos) {
+    if (nanos < 0) nanos = 0;
+    buckets.incrementAndGet(BUCKET_COUNT - Long.numberOfLeadingZeros(nanos));
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    long max;
+    while (nanos > (max = maxNanos.get())) {
+      if (maxNanos.compareAndSet(max, nanos)) break;
+    }
+  }
+
+  /** The number of recorded durations. */
+  public long count() {
+    return count.get();
+  }
+
+  /** The sum of all recorded durations. */
+  public long totalTime(TimeUnit unit) {
+    return unit.convert(totalNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /** The longest recorded duration. */
+  public long max(TimeUnit unit) {
+    return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns an upper bound for the duration below which {@code percentile} of recorded durations
+   * fall, or 0 if nothing was recorded. For example, {@code percentile(0.99, MILLISECONDS)}.
+   */
+  public long percentile(double percentile, TimeUnit unit) {
+    if (percentile < 0 || percentile > 1) {
+      throw new IllegalArgumentException("percentile must be between 0 and 1: " + percentile);
+    }
+    long count = this.count.get();
+    if (count == 0) return 0;
+    long rank = (long) Math.ceil(percentile * count);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        long upperBoundNanos = i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+        return unit.convert(Math.min(upperBoundNanos, maxNanos.get()), TimeUnit.NANOSECONDS);
+      }
+    }
+    return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override public String toString() {
+    return "LatencyHistogram{count=" + count()
+        + ", p50=" + percentile(0.5, TimeUnit.MICROSECONDS)
+        + "us, p99=" + percentile(0.99, TimeUnit.MICROSECONDS)
+        + "us, max=" + max(TimeUnit.MICROSECONDS)
+        + "us}";
+  }
+}
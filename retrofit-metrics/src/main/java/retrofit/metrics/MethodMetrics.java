@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Latency histograms and outcome counters for the calls to one service method. */
+public final class MethodMetrics {
+  private final String service;
+  private final String method;
+  final LatencyHistogram handlerCreation = new LatencyHistogram();
+  final LatencyHistogram requestBuild = new LatencyHistogram();
+  final LatencyHistogram network = new LatencyHistogram();
+  final LatencyHistogram conversion = new LatencyHistogram();
+  final LatencyHistogram callbackQueue = new LatencyHistogram();
+  final AtomicLong responses = new AtomicLong();
+  final AtomicLong httpErrors = new AtomicLong();
+  final AtomicLong networkFailures = new AtomicLong();
+
+  MethodMetrics(Method method) {
+    this.service = method.getDeclaringClass().getName();
+    this.method = method.getName();
+  }
+
+  /** The binary name of the service interface which declares the method. */
+  public String service() {
+    return service;
+  }
+
+  /** The name of the method. */
+  public String method() {
+    return method;
+  }
+
+  /** Time to parse the method's annotations and locate its adapter and converters. */
+  public LatencyHistogram handlerCreation() {
+    return handlerCreation;
+  }
+
+  /** Time to convert the arguments of each call into a request. */
+  public LatencyHistogram requestBuild() {
+    return requestBuild;
+  }
+
+  /** Time from sending each request until its response headers were received. */
+  public LatencyHistogram network() {
+    return network;
+  }
+
+  /** Time to read and convert each successful response body. */
+  public LatencyHistogram conversion() {
+    return conversion;
+  }
+
+  /** Time each asynchronous outcome waited for the callback executor. */
+  public LatencyHistogram callbackQueue() {
+    return callbackQueue;
+  }
+
+  /** The number of responses received, including HTTP errors. */
+  public long responses() {
+    return responses.get();
+  }
+
+  /** The number of responses whose status code was not 2xx. */
+  public long httpErrors() {
+    return httpErrors.get();
+  }
+
+  /** The number of calls for which no response was received. */
+  public long networkFailures() {
+    return networkFailures.get();
+  }
+
+  @Override public String toString() {
+    return service + "." + method;
+  }
+}
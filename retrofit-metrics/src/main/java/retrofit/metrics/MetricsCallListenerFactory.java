@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.metrics;
+
+import com.squareup.okhttp.Request;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import retrofit.CallListener;
+
+/**
+ * Records the latency of each phase of every call in {@linkplain MethodMetrics per-method
+ * metrics}, tagged by service interface and method name.
+ * <pre>
+ * MetricsCallListenerFactory metrics = MetricsCallListenerFactory.create();
+ * Retrofit retrofit = new Retrofit.Builder()
+ *     .baseUrl("https://example.com/")
+ *     .callListenerFactory(metrics)
+ *     .build();
+ * </pre>
+ */
+public final class MetricsCallListenerFactory extends CallListener.Factory {
+  public static MetricsCallListenerFactory create() {
+    return new MetricsCallListenerFactory();
+  }
+
+  private final ConcurrentMap<Method, MethodMetrics> metrics = new ConcurrentHashMap<>();
+
+  private MetricsCallListenerFactory() {
+  }
+
+  /** Returns the metrics of every method which has been called or validated. */
+  public List<MethodMetrics> metrics() {
+    return new ArrayList<>(metrics.values());
+  }
+
+  /** Returns the metrics of {@code method}, or null if it has not been called or validated. */
+  public MethodMetrics metrics(Method method) {
+    if (method == null) throw new NullPointerException("method == null");
+    return metrics.get(method);
+  }
+
+  private MethodMetrics metricsFor(Method method) {
+    MethodMetrics result = metrics.get(method);
+    if (result == null) {
+      MethodMetrics created = new MethodMetrics(method);
+      result = metrics.putIfAbsent(method, created);
+      if (result == null) {
+        result = created;
+      }
+    }
+    return result;
+  }
+
+  @Override public CallListener create(Method method) {
+    return new MetricsCallListener(metricsFor(method));
+  }
+
+  @Override public void methodHandlerCreated(Method method, long durationNanos) {
+    metricsFor(method).handlerCreation.record(durationNanos);
+  }
+
+  /**
+   * Times the phases of one call. Phases of an asynchronous call may run on different threads,
+   * each of which happens after the one before.
+   */
+  static final class MetricsCallListener extends CallListener {
+    private final MethodMetrics metrics;
+    private volatile long requestBuildStartNanos;
+    private volatile long networkStartNanos;
+    private volatile long conversionStartNanos;
+    private volatile long callbackDispatchStartNanos;
+
+    MetricsCallListener(MethodMetrics metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override public void requestBuildStart() {
+      requestBuildStartNanos = System.nanoTime();
+    }
+
+    @Override public void requestBuildEnd(Request request) {
+      metrics.requestBuild.record(System.nanoTime() - requestBuildStartNanos);
+    }
+
+    @Override public void networkStart(Request request) {
+      networkStartNanos = System.nanoTime();
+    }
+
+    @Override public void networkEnd(com.squareup.okhttp.Response response) {
+      metrics.network.record(System.nanoTime() - networkStartNanos);
+      metrics.responses.incrementAndGet();
+      if (!response.isSuccessful()) {
+        metrics.httpErrors.incrementAndGet();
+      }
+    }
+
+    @Override public void networkFailed(IOException e) {
+      metrics.networkFailures.incrementAndGet();
+    }
+
+    @Override public void conversionStart() {
+      conversionStartNanos = System.nanoTime();
+    }
+
+    @Override public void conversionEnd() {
+      metrics.conversion.record(System.nanoTime() - conversionStartNanos);
+    }
+
+    @Override public void callbackDispatchStart() {
+      callbackDispatchStartNanos = System.nanoTime();
+    }
+
+    @Override public void callbackDispatchEnd() {
+      metrics.callbackQueue.record(System.nanoTime() - callbackDispatchStartNanos);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.metrics;
+
+import com.squareup.okhttp.ResponseBody;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import org.junit.Rule;
+import org.junit.Test;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Converter;
+import retrofit.Response;
+import retrofit.Retrofit;
+import retrofit.http.GET;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class MetricsCallListenerFactoryTest {
+  @Rule public final MockWebServer server = new MockWebServer();
+
+  interface Service {
+    @GET("/") Call<String> getString();
+  }
+
+  private final MetricsCallListenerFactory metrics = MetricsCallListenerFactory.create();
+
+  private Service service(Executor callbackExecutor) {
+    Retrofit.Builder builder = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new StringConverterFactory())
+        .callListenerFactory(metrics);
+    if (callbackExecutor != null) {
+      builder.callbackExecutor(callbackExecutor);
+    }
+    return builder.build().create(Service.class);
+  }
+
+  @Test public void recordsEachPhaseByMethod() throws IOException, NoSuchMethodException {
+    Service service = service(null);
+    server.enqueue(new MockResponse().setBody("Hi"));
+    server.enqueue(new MockResponse().setResponseCode(500));
+
+    service.getString().execute();
+    service.getString().execute();
+
+    MethodMetrics getString = metrics.metrics(Service.class.getDeclaredMethod("getString"));
+    assertThat(getString.service()).isEqualTo(Service.class.getName());
+    assertThat(getString.method()).isEqualTo("getString");
+    assertThat(getString.handlerCreation().count()).isEqualTo(1);
+    assertThat(getString.requestBuild().count()).isEqualTo(2);
+    assertThat(getString.network().count()).isEqualTo(2);
+    assertThat(getString.conversion().count()).isEqualTo(1);
+    assertThat(getString.callbackQueue().count()).isEqualTo(0);
+    assertThat(getString.responses()).isEqualTo(2);
+    assertThat(getString.httpErrors()).isEqualTo(1);
+    assertThat(getString.networkFailures()).isEqualTo(0);
+    assertThat(metrics.metrics()).containsExactly(getString);
+  }
+
+  @Test public void recordsCallbackQueueing()
+      throws InterruptedException, NoSuchMethodException {
+    Service service = service(new Executor() {
+      @Override public void execute(final Runnable command) {
+        new Thread() {
+          @Override public void run() {
+            try {
+              Thread.sleep(50);
+            } catch (InterruptedException e) {
+              throw new AssertionError(e);
+            }
+            command.run();
+          }
+        }.start();
+      }
+    });
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    service.getString().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        latch.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        throw new AssertionError(t);
+      }
+    });
+    assertTrue(latch.await(10, SECONDS));
+
+    MethodMetrics getString = metrics.metrics(Service.class.getDeclaredMethod("getString"));
+    assertThat(getString.callbackQueue().count()).isEqualTo(1);
+    assertThat(getString.callbackQueue().max(MILLISECONDS)).isGreaterThanOrEqualTo(50);
+    assertThat(getString.callbackQueue().percentile(1.0, NANOSECONDS))
+        .isEqualTo(getString.callbackQueue().max(NANOSECONDS));
+  }
+
+  static class StringConverterFactory extends Converter.Factory {
+    @Override
+    public Converter<ResponseBody, ?> fromResponseBody(Type type, Annotation[] annotations) {
+      return new Converter<ResponseBody, String>() {
+        @Override public String convert(ResponseBody value) throws IOException {
+          return value.string();
+        }
+      };
+    }
+  }
+}
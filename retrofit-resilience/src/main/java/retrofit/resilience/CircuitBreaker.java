@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Fail calls to this method immediately while it is failing or slow. The breaker tracks the
+ * outcome of calls over a sliding {@linkplain #window() window}. A call fails if it throws an
+ * {@link java.io.IOException IOException} or receives a 5xx response. When the failure rate or slow
+ * call rate reaches its threshold, the breaker opens. While open, calls fail with {@link
+ * CircuitBreakerOpenException} without making a request. After the {@linkplain #openDuration() open
+ * duration} the breaker lets {@linkplain #halfOpenCalls() a few calls} through. It closes if they
+ * all succeed and opens again otherwise.
+ * <p>
+ * Each annotated method has its own breaker.
+ */
+@Documented
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface CircuitBreaker {
+  /** The percentage of failed calls at which the breaker opens. */
+  int failureRateThreshold() default 50;
+
+  /** Calls which take longer than this are slow, or -1 to ignore latency. */
+  long slowCallDuration() default -1;
+
+  /** The percentage of slow calls at which the breaker opens. */
+  int slowCallRateThreshold() default 100;
+
+  /** The length of the sliding window over which calls are counted. */
+  long window() default 10000;
+
+  /** The fewest calls in the window for which rates are computed. */
+  int minimumCalls() default 20;
+
+  /** How long the breaker stays open before letting calls through again. */
+  long openDuration() default 5000;
+
+  /** The number of trial calls let through after the open duration. */
+  int halfOpenCalls() default 3;
+
+  /** The unit of {@link #slowCallDuration()}, {@link #window()}, and {@link #openDuration()}. */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
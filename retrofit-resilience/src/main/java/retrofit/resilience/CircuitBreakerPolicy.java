@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import retrofit.Response;
+
+/**
+ * The circuit breaker of one method, from its {@link CircuitBreaker} annotation. State changes are
+ * made by swapping immutable {@link State} instances, so no call ever waits on a lock.
+ */
+final class CircuitBreakerPolicy {
+  private static final int CLOSED = 0;
+  private static final int OPEN = 1;
+  private static final int HALF_OPEN = 2;
+
+  private final int failureRateThreshold;
+  private final long slowCallNanos;
+  private final int slowCallRateThreshold;
+  private final int minimumCalls;
+  private final long openNanos;
+  private final int halfOpenCalls;
+  private final SlidingWindow window;
+  private final AtomicReference<State> state;
+
+  CircuitBreakerPolicy(CircuitBreaker breaker) {
+    TimeUnit unit = breaker.unit();
+    if (breaker.failureRateThreshold() < 1 || breaker.failureRateThreshold() > 100
+        || breaker.slowCallRateThreshold() < 1 || breaker.slowCallRateThreshold() > 100) {
+      throw new IllegalArgumentException("@CircuitBreaker thresholds must be between 1 and 100.");
+    }
+    if (breaker.window() <= 0 || breaker.openDuration() < 0 || breaker.slowCallDuration() < -1) {
+      throw new IllegalArgumentException(
+          "@CircuitBreaker window must be positive and durations must not be negative.");
+    }
+    if (breaker.minimumCalls() < 1 || breaker.halfOpenCalls() < 1) {
+      throw new IllegalArgumentException(
+          "@CircuitBreaker minimumCalls and halfOpenCalls must be at least 1.");
+    }
+    this.failureRateThreshold = breaker.failureRateThreshold();
+    this.slowCallNanos =
+        breaker.slowCallDuration() != -1 ? unit.toNanos(breaker.slowCallDuration()) : -1;
+    this.slowCallRateThreshold = breaker.slowCallRateThreshold();
+    this.minimumCalls = breaker.minimumCalls();
+    this.openNanos = unit.toNanos(breaker.openDuration());
+    this.halfOpenCalls = breaker.halfOpenCalls();
+    this.window = new SlidingWindow(unit.toNanos(breaker.window()));
+    this.state = new AtomicReference<>(new State(CLOSED, 0, 0));
+  }
+
+  /**
+   * Returns the state which permitted a call to proceed, or null if it may not. Every permitted
+   * call must be followed by a {@linkplain #record record} or {@linkplain #release release} against
+   * the returned state.
+   */
+  State tryAcquire() {
+    while (true) {
+      State current = state.get();
+      switch (current.kind) {
+        case CLOSED:
+          return current;
+
+        case OPEN:
+          if (System.nanoTime() - current.openedAtNanos < openNanos) {
+            return null;
+          }
+          State halfOpen = new State(HALF_OPEN, 0, halfOpenCalls);
+          state.compareAndSet(current, halfOpen);
+          break; // Retry against whichever state won.
+
+        case HALF_OPEN:
+          return current.tryTakePermit() ? current : null;
+
+        default:
+          throw new AssertionError();
+      }
+    }
+  }
+
+  boolean isFailure(Response<?> response) {
+    return response.code() >= 500;
+  }
+
+  /** Record the outcome of a call permitted by {@code permit}. */
+  void record(State permit, boolean failure, long latencyNanos) {
+    boolean slow = slowCallNanos != -1 && latencyNanos > slowCallNanos;
+    if (permit.kind == HALF_OPEN) {
+      if (failure || slow) {
+        state.compareAndSet(permit, new State(OPEN, System.nanoTime(), 0));
+      } else if (permit.successes.incrementAndGet() == halfOpenCalls) {
+        window.reset();
+        state.compareAndSet(permit, new State(CLOSED, 0, 0));
+      }
+      return;
+    }
+    if (state.get() != permit) {
+      return; // A call which started before the breaker opened.
+    }
+
+    long now = System.nanoTime();
+    window.record(now, failure, slow);
+    if (exceedsThresholds(window.snapshot(now))) {
+      state.compareAndSet(permit, new State(OPEN, now, 0));
+    }
+  }
+
+  private boolean exceedsThresholds(SlidingWindow.Snapshot snapshot) {
+    if (snapshot.calls < minimumCalls) {
+      return false;
+    }
+    if (snapshot.failures * 100 >= failureRateThreshold * snapshot.calls) {
+      return true;
+    }
+    return slowCallNanos != -1
+        && snapshot.slowCalls * 100 >= slowCallRateThreshold * snapshot.calls;
+  }
+
+  /**
+   * Record that a call permitted by {@code permit} ended without an outcome, such as by being
+   * canceled. A half-open trial permit returns to the state it was taken from, even if the breaker
+   * has since moved on.
+   */
+  void release(State permit) {
+    if (permit.kind == HALF_OPEN) {
+      permit.permits.incrementAndGet();
+    }
+  }
+
+  static final class State {
+    final int kind;
+    final long openedAtNanos;
+    final AtomicInteger permits;
+    final AtomicInteger successes = new AtomicInteger();
+
+    State(int kind, long openedAtNanos, int permits) {
+      this.kind = kind;
+      this.openedAtNanos = openedAtNanos;
+      this.permits = new AtomicInteger(permits);
+    }
+
+    /** Take one trial permit without ever letting the count fall below zero. */
+    boolean tryTakePermit() {
+      for (int available; (available = permits.get()) > 0; ) {
+        if (permits.compareAndSet(available, available - 1)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
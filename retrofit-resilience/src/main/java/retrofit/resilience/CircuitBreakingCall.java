@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.io.IOException;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+
+/** A call which is rejected without executing its delegate while its circuit breaker is open. */
+final class CircuitBreakingCall<T> implements Call<T> {
+  private final Call<T> delegate;
+  private final CircuitBreakerPolicy policy;
+  private volatile boolean canceled;
+
+  CircuitBreakingCall(Call<T> delegate, CircuitBreakerPolicy policy) {
+    this.delegate = delegate;
+    this.policy = policy;
+  }
+
+  @SuppressWarnings("CloneDoesntCallSuperClone") // We are a final type & this saves clearing state.
+  @Override public Call<T> clone() {
+    return new CircuitBreakingCall<>(delegate.clone(), policy);
+  }
+
+  @Override public Response<T> execute() throws IOException {
+    CircuitBreakerPolicy.State permit = policy.tryAcquire();
+    if (permit == null) {
+      throw new CircuitBreakerOpenException("Circuit breaker is open");
+    }
+    long startNanos = System.nanoTime();
+    Response<T> response;
+    try {
+      response = delegate.execute();
+    } catch (IOException e) {
+      recordFailure(permit, startNanos, e);
+      throw e;
+    } catch (RuntimeException | Error e) {
+      policy.release(permit);
+      throw e;
+    }
+    policy.record(permit, policy.isFailure(response), System.nanoTime() - startNanos);
+    return response;
+  }
+
+  @Override public void enqueue(final Callback<T> callback) {
+    final CircuitBreakerPolicy.State permit = policy.tryAcquire();
+    if (permit == null) {
+      callback.onFailure(new CircuitBreakerOpenException("Circuit breaker is open"));
+      return;
+    }
+    final long startNanos = System.nanoTime();
+    delegate.enqueue(new Callback<T>() {
+      @Override public void onResponse(Response<T> response) {
+        policy.record(permit, policy.isFailure(response), System.nanoTime() - startNanos);
+        callback.onResponse(response);
+      }
+
+      @Override public void onFailure(Throwable t) {
+        if (t instanceof IOException) {
+          recordFailure(permit, startNanos, (IOException) t);
+        } else {
+          policy.release(permit);
+        }
+        callback.onFailure(t);
+      }
+    });
+  }
+
+  private void recordFailure(CircuitBreakerPolicy.State permit, long startNanos, IOException e) {
+    if (canceled || ResilienceCallAdapterFactory.isRejection(e)) {
+      policy.release(permit); // The server's health is unknown.
+    } else {
+      policy.record(permit, true, System.nanoTime() - startNanos);
+    }
+  }
+
+  @Override public void cancel() {
+    canceled = true;
+    delegate.cancel();
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of calls in flight, adjusting the cap to how the server responds. The limit
+ * grows by one when calls complete normally while at least half of it is in use. It shrinks by
+ * the {@linkplain Builder#backoffRatio backoff ratio} when a call is dropped. A call is dropped if
+ * it fails with an {@link java.io.IOException IOException}, receives a 429 or 503 response, or
+ * takes longer than the {@linkplain Builder#latencyThreshold latency threshold}. This is additive
+ * increase, multiplicative decrease (AIMD).
+ * <p>
+ * Calls over the limit wait in a bounded queue for up to the {@linkplain Builder#maxQueueTime
+ * maximum queue time}. They fail with {@link ConcurrencyLimitExceededException} if the queue is
+ * full or the time passes. By default nothing is queued and calls over the limit fail immediately.
+ * <p>
+ * Share one limiter between the services which call a host to limit calls per host.
+ */
+public final class ConcurrencyLimiter {
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final long latencyThresholdNanos;
+  private final int maxQueueSize;
+  final long maxQueueTimeNanos;
+
+  private int limit; // Guarded by this.
+  private int inFlight; // Guarded by this.
+  private final Deque<Runnable> queue = new ArrayDeque<>(); // Guarded by this.
+
+  ConcurrencyLimiter(Builder builder) {
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.backoffRatio = builder.backoffRatio;
+    this.latencyThresholdNanos = builder.latencyThresholdNanos;
+    this.maxQueueSize = builder.maxQueueSize;
+    this.maxQueueTimeNanos = builder.maxQueueTimeNanos;
+    this.limit = builder.initialLimit;
+  }
+
+  /** The current limit on calls in flight. */
+  public synchronized int limit() {
+    return limit;
+  }
+
+  /** The number of calls in flight. */
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  /** Take a permit if one is free. */
+  synchronized boolean tryAcquire() {
+    if (inFlight < limit && queue.isEmpty()) {
+      inFlight++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Take a permit now, or queue {@code onPermit} to run once one is free. Returns false if a permit
+   * was taken and {@code onPermit} will not run, and true if it was queued. Throws if the queue is
+   * full.
+   */
+  synchronized boolean acquireOrQueue(Runnable onPermit) throws ConcurrencyLimitExceededException {
+    if (tryAcquire()) {
+      return false;
+    }
+    if (queue.size() >= maxQueueSize) {
+      throw new ConcurrencyLimitExceededException("Concurrency limit of " + limit + " exceeded");
+    }
+    queue.addLast(onPermit);
+    return true;
+  }
+
+  /** Remove a queued waiter. Returns false if it was already given a permit. */
+  synchronized boolean dequeue(Runnable onPermit) {
+    return queue.remove(onPermit);
+  }
+
+  /** Return a permit without a measurement, such as for a canceled call. */
+  void release() {
+    List<Runnable> ready;
+    synchronized (this) {
+      inFlight--;
+      ready = takeReady();
+    }
+    runAll(ready);
+  }
+
+  /** Return a permit and adjust the limit from the call's outcome. */
+  void release(long latencyNanos, boolean dropped) {
+    if (latencyThresholdNanos != -1 && latencyNanos > latencyThresholdNanos) {
+      dropped = true;
+    }
+    List<Runnable> ready;
+    synchronized (this) {
+      if (dropped) {
+        limit = Math.max(minLimit, (int) (limit * backoffRatio));
+      } else if (inFlight * 2 >= limit) {
+        limit = Math.min(maxLimit, limit + 1);
+      }
+      inFlight--;
+      ready = takeReady();
+    }
+    runAll(ready);
+  }
+
+  /** Gives permits to queued waiters while they are free. */
+  private List<Runnable> takeReady() {
+    List<Runnable> ready = null;
+    while (inFlight < limit && !queue.isEmpty()) {
+      if (ready == null) ready = new ArrayList<>();
+      ready.add(queue.removeFirst());
+      inFlight++;
+    }
+    return ready;
+  }
+
+  private static void runAll(List<Runnable> ready) {
+    if (ready == null) return;
+    for (Runnable runnable : ready) {
+      runnable.run();
+    }
+  }
+
+  /** Build a new {@link ConcurrencyLimiter}. */
+  public static final class Builder {
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private double backoffRatio = 0.9;
+    private long latencyThresholdNanos = -1;
+    private int maxQueueSize;
+    private long maxQueueTimeNanos;
+
+    /** The limit before any calls have completed. Defaults to 20. */
+    public Builder initialLimit(int initialLimit) {
+      if (initialLimit < 1) throw new IllegalArgumentException("initialLimit < 1: " + initialLimit);
+      this.initialLimit = initialLimit;
+      return this;
+    }
+
+    /** The bounds of the limit. Default to 1 and 1000. */
+    public Builder limitBounds(int minLimit, int maxLimit) {
+      if (minLimit < 1 || maxLimit < minLimit) {
+        throw new IllegalArgumentException("Expected 1 <= minLimit <= maxLimit.");
+      }
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /** The factor applied to the limit when a call is dropped. Defaults to 0.9. */
+    public Builder backoffRatio(double backoffRatio) {
+      if (backoffRatio <= 0 || backoffRatio >= 1) {
+        throw new IllegalArgumentException("backoffRatio must be between 0 and 1: " + backoffRatio);
+      }
+      this.backoffRatio = backoffRatio;
+      return this;
+    }
+
+    /** Calls slower than this count as dropped. By default latency is ignored. */
+    public Builder latencyThreshold(long latencyThreshold, TimeUnit unit) {
+      if (latencyThreshold <= 0) {
+        throw new IllegalArgumentException("latencyThreshold <= 0: " + latencyThreshold);
+      }
+      this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+      return this;
+    }
+
+    /**
+     * Let up to {@code maxQueueSize} calls over the limit wait for up to {@code maxQueueTime} for a
+     * permit. By default calls over the limit fail immediately.
+     */
+    public Builder queue(int maxQueueSize, long maxQueueTime, TimeUnit unit) {
+      if (maxQueueSize < 0) throw new IllegalArgumentException("maxQueueSize < 0: " + maxQueueSize);
+      if (maxQueueTime < 0) throw new IllegalArgumentException("maxQueueTime < 0: " + maxQueueTime);
+      this.maxQueueSize = maxQueueSize;
+      this.maxQueueTimeNanos = unit.toNanos(maxQueueTime);
+      return this;
+    }
+
+    /** Create the {@link ConcurrencyLimiter} instance. */
+    public ConcurrencyLimiter build() {
+      if (initialLimit < minLimit || initialLimit > maxLimit) {
+        throw new IllegalStateException("initialLimit must be within the limit bounds.");
+      }
+      return new ConcurrencyLimiter(this);
+    }
+  }
+}
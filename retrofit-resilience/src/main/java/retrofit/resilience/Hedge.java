@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Send a duplicate of a slow call and use whichever response arrives first. If no response has
+ * arrived after the {@linkplain #delay() hedging delay}, a {@linkplain retrofit.Call#clone() clone}
+ * of the call is sent, up to {@link #maxAttempts()} attempts. The first response wins and the other
+ * attempts are canceled. Hedged attempts are only sent if the {@link RetryBudget} allows it, and
+ * not once the call timeout has fired or the {@link retrofit.Deadline Deadline} has passed.
+ * <p>
+ * Only idempotent methods (GET, HEAD, OPTIONS, PUT, and DELETE) may be hedged.
+ * <p>
+ * Hedging has no effect when {@linkplain retrofit.Retrofit.Builder#coalesceRequests requests are
+ * coalesced}: each hedged attempt is identical to the first and joins its network call instead of
+ * sending a new one.
+ */
+@Documented
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Hedge {
+  /** The maximum number of attempts in flight at once, including the first. */
+  int maxAttempts() default 2;
+
+  /**
+   * The delay before each hedged attempt, or -1 to use the 95th percentile latency of recent calls
+   * to this method. In that case no hedged attempts are sent until enough calls have completed.
+   */
+  long delay() default -1;
+
+  /** The unit of {@link #delay()}. */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
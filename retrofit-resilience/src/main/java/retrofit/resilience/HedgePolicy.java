@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/** The hedging settings of one method, from its {@link Hedge} annotation. */
+final class HedgePolicy {
+  final int maxAttempts;
+  private final long delayNanos;
+  final RetryBudget budget;
+  final ScheduledExecutorService scheduler;
+  final LatencyTracker latencies = new LatencyTracker();
+
+  HedgePolicy(Hedge hedge, RetryBudget budget, ScheduledExecutorService scheduler) {
+    if (hedge.maxAttempts() < 1) {
+      throw new IllegalArgumentException("@Hedge maxAttempts < 1: " + hedge.maxAttempts());
+    }
+    if (hedge.delay() < -1) {
+      throw new IllegalArgumentException("@Hedge delay must be -1 (adaptive) or greater.");
+    }
+    this.maxAttempts = hedge.maxAttempts();
+    this.delayNanos = hedge.delay() != -1 ? hedge.unit().toNanos(hedge.delay()) : -1;
+    this.budget = budget;
+    this.scheduler = scheduler;
+  }
+
+  /** Returns the delay before the next hedged attempt, or -1 if none should be sent. */
+  long delayNanos() {
+    return delayNanos != -1 ? delayNanos : latencies.p95Nanos();
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A call which races its delegate against clones sent while it is slow. The first response wins
+ * and the other attempts are canceled. The call fails only once every attempt has failed.
+ */
+final class HedgingCall<T> implements Call<T> {
+  private final Call<T> delegate;
+  private final HedgePolicy policy;
+
+  private volatile Race race;
+  private volatile boolean canceled;
+  private boolean executed; // Guarded by this.
+
+  HedgingCall(Call<T> delegate, HedgePolicy policy) {
+    this.delegate = delegate;
+    this.policy = policy;
+  }
+
+  @SuppressWarnings("CloneDoesntCallSuperClone") // We are a final type & this saves clearing state.
+  @Override public Call<T> clone() {
+    return new HedgingCall<>(delegate.clone(), policy);
+  }
+
+  @Override public void enqueue(Callback<T> callback) {
+    synchronized (this) {
+      if (executed) throw new IllegalStateException("Already executed");
+      executed = true;
+    }
+    Race race = new Race(callback);
+    this.race = race;
+    race.start();
+    if (canceled) {
+      race.cancel();
+    }
+  }
+
+  @Override public Response<T> execute() throws IOException {
+    final AtomicReference<Response<T>> responseRef = new AtomicReference<>();
+    final AtomicReference<Throwable> failureRef = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    enqueue(new Callback<T>() {
+      @Override public void onResponse(Response<T> response) {
+        responseRef.set(response);
+        latch.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        failureRef.set(t);
+        latch.countDown();
+      }
+    });
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted");
+    }
+    Response<T> response = responseRef.get();
+    if (response != null) return response;
+    Throwable failure = failureRef.get();
+    if (failure instanceof IOException) throw (IOException) failure;
+    if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+    if (failure instanceof Error) throw (Error) failure;
+    throw new RuntimeException(failure);
+  }
+
+  @Override public void cancel() {
+    canceled = true;
+    Race race = this.race;
+    if (race != null) {
+      race.cancel();
+    }
+  }
+
+  /** The attempts of one execution. */
+  final class Race {
+    private final Callback<T> callback;
+    private final long startNanos = System.nanoTime();
+    private final List<Call<T>> attempts = new ArrayList<>(); // Guarded by this.
+    private int inFlight; // Guarded by this.
+    private boolean done; // Guarded by this.
+    private boolean hedgingStopped; // Guarded by this.
+    private Future<?> hedgeTask; // Guarded by this.
+
+    Race(Callback<T> callback) {
+      this.callback = callback;
+    }
+
+    void start() {
+      synchronized (this) {
+        attempts.add(delegate);
+        inFlight++;
+      }
+      delegate.enqueue(new AttemptCallback(delegate));
+      scheduleHedge();
+    }
+
+    private void scheduleHedge() {
+      long delayNanos = policy.delayNanos();
+      if (delayNanos < 0) {
+        return;
+      }
+      Runnable hedge = new Runnable() {
+        @Override public void run() {
+          if (policy.budget.canRetry()) {
+            sendHedge();
+          }
+        }
+      };
+      synchronized (this) {
+        if (!done && !hedgingStopped && attempts.size() < policy.maxAttempts) {
+          hedgeTask = policy.scheduler.schedule(hedge, delayNanos, NANOSECONDS);
+        }
+      }
+    }
+
+    /** Send another attempt now, and schedule the one after it. */
+    private void sendHedge() {
+      Call<T> call;
+      synchronized (this) {
+        if (done || hedgingStopped || attempts.size() >= policy.maxAttempts) return;
+        call = delegate.clone();
+        attempts.add(call);
+        inFlight++;
+      }
+      call.enqueue(new AttemptCallback(call));
+      scheduleHedge();
+    }
+
+    /** Send no further attempts. The attempts in flight may still win. Call with this held. */
+    private void stopHedging() {
+      hedgingStopped = true;
+      if (hedgeTask != null) {
+        hedgeTask.cancel(false);
+      }
+    }
+
+    void cancel() {
+      List<Call<T>> toCancel;
+      boolean report;
+      synchronized (this) {
+        if (done) return;
+        toCancel = new ArrayList<>(attempts);
+        if (hedgeTask != null) {
+          hedgeTask.cancel(false);
+        }
+        // With no attempt in flight, nothing else will report the outcome.
+        report = inFlight == 0;
+        if (report) {
+          done = true;
+        }
+      }
+      for (Call<T> attempt : toCancel) {
+        attempt.cancel();
+      }
+      if (report) {
+        callback.onFailure(new IOException("Canceled"));
+      }
+    }
+
+    final class AttemptCallback implements Callback<T> {
+      private final Call<T> call;
+
+      AttemptCallback(Call<T> call) {
+        this.call = call;
+      }
+
+      @Override public void onResponse(Response<T> response) {
+        List<Call<T>> losers;
+        synchronized (Race.this) {
+          inFlight--;
+          if (done) {
+            ResilienceCallAdapterFactory.closeQuietly(response);
+            return;
+          }
+          done = true;
+          if (hedgeTask != null) {
+            hedgeTask.cancel(false);
+          }
+          losers = new ArrayList<>(attempts);
+          losers.remove(call);
+        }
+        for (Call<T> loser : losers) {
+          loser.cancel();
+        }
+        // Measure from the first attempt even when a hedge wins. That is a lower bound on the
+        // latency the call would have had without hedging, which is what the delay adapts to.
+        policy.latencies.record(System.nanoTime() - startNanos);
+        policy.budget.recordSuccess();
+        callback.onResponse(response);
+      }
+
+      @Override public void onFailure(Throwable t) {
+        boolean hedgeNow = false;
+        synchronized (Race.this) {
+          inFlight--;
+          if (done) return;
+          if (ResilienceCallAdapterFactory.isRejection(t)
+              || ResilienceCallAdapterFactory.isTimeUp(t)) {
+            // The server was never asked or the call is out of time. Either way another attempt
+            // would fail the same way.
+            stopHedging();
+          } else if (!canceled) {
+            policy.budget.recordFailure();
+          }
+          if (inFlight > 0) return; // Another attempt may still succeed.
+          if (!canceled && !hedgingStopped && attempts.size() < policy.maxAttempts
+              && policy.budget.canRetry()) {
+            // Don't wait for the hedging delay when nothing is in flight.
+            if (hedgeTask != null) {
+              hedgeTask.cancel(false);
+            }
+            hedgeNow = true;
+          } else {
+            done = true;
+          }
+        }
+        if (hedgeNow) {
+          sendHedge();
+        } else {
+          callback.onFailure(t);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Keeps the most recent latencies of a method's calls to estimate its 95th percentile. */
+final class LatencyTracker {
+  private static final int SAMPLE_COUNT = 128;
+  static final int MIN_SAMPLE_COUNT = 20;
+
+  private final AtomicLongArray samples = new AtomicLongArray(SAMPLE_COUNT);
+  private final AtomicLong recorded = new AtomicLong();
+
+  void record(long latencyNanos) {
+    long index = recorded.getAndIncrement();
+    samples.set((int) (index % SAMPLE_COUNT), latencyNanos);
+  }
+
+  /** Returns the 95th percentile latency, or -1 if too few calls have completed. */
+  long p95Nanos() {
+    int count = (int) Math.min(recorded.get(), SAMPLE_COUNT);
+    if (count < MIN_SAMPLE_COUNT) {
+      return -1;
+    }
+    long[] sorted = new long[count];
+    for (int i = 0; i < count; i++) {
+      sorted[i] = samples.get(i);
+    }
+    Arrays.sort(sorted);
+    return sorted[(count * 95 + 99) / 100 - 1];
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Response;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/** A call which holds a permit from a {@link ConcurrencyLimiter} while its delegate runs. */
+final class LimitedCall<T> implements Call<T> {
+  private final Call<T> delegate;
+  private final ConcurrencyLimiter limiter;
+  private final ScheduledExecutorService scheduler;
+
+  private volatile boolean canceled;
+  private Runnable queued; // Guarded by this. Non-null while waiting for a permit.
+  private Callback<T> queuedCallback; // Guarded by this.
+
+  LimitedCall(Call<T> delegate, ConcurrencyLimiter limiter, ScheduledExecutorService scheduler) {
+    this.delegate = delegate;
+    this.limiter = limiter;
+    this.scheduler = scheduler;
+  }
+
+  @SuppressWarnings("CloneDoesntCallSuperClone") // We are a final type & this saves clearing state.
+  @Override public Call<T> clone() {
+    return new LimitedCall<>(delegate.clone(), limiter, scheduler);
+  }
+
+  @Override public Response<T> execute() throws IOException {
+    final CountDownLatch permit = new CountDownLatch(1);
+    Runnable onPermit = new Runnable() {
+      @Override public void run() {
+        permit.countDown();
+      }
+    };
+    if (limiter.acquireOrQueue(onPermit)) {
+      boolean acquired;
+      try {
+        acquired = permit.await(limiter.maxQueueTimeNanos, NANOSECONDS);
+      } catch (InterruptedException e) {
+        acquired = false;
+        Thread.currentThread().interrupt();
+      }
+      if (!acquired && limiter.dequeue(onPermit)) {
+        if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("interrupted");
+        throw timedOut();
+      }
+    }
+
+    long startNanos = System.nanoTime();
+    Response<T> response;
+    try {
+      response = delegate.execute();
+    } catch (IOException e) {
+      release(startNanos, true);
+      throw e;
+    } catch (RuntimeException | Error e) {
+      limiter.release();
+      throw e;
+    }
+    release(startNanos, isDropped(response));
+    return response;
+  }
+
+  @Override public void enqueue(final Callback<T> callback) {
+    Runnable onPermit = new Runnable() {
+      @Override public void run() {
+        synchronized (LimitedCall.this) {
+          queued = null;
+          queuedCallback = null;
+        }
+        start(callback);
+      }
+    };
+    boolean isQueued = false;
+    ConcurrencyLimitExceededException rejected = null;
+    synchronized (this) {
+      try {
+        isQueued = limiter.acquireOrQueue(onPermit);
+      } catch (ConcurrencyLimitExceededException e) {
+        rejected = e;
+      }
+      if (isQueued) {
+        queued = onPermit;
+        queuedCallback = callback;
+      }
+    }
+    if (rejected != null) {
+      callback.onFailure(rejected);
+      return;
+    }
+    if (!isQueued) {
+      start(callback);
+      return;
+    }
+
+    scheduler.schedule(new Runnable() {
+      @Override public void run() {
+        if (dequeue()) {
+          callback.onFailure(timedOut());
+        }
+      }
+    }, limiter.maxQueueTimeNanos, NANOSECONDS);
+  }
+
+  private void start(final Callback<T> callback) {
+    if (canceled) {
+      limiter.release();
+      callback.onFailure(new IOException("Canceled"));
+      return;
+    }
+    final long startNanos = System.nanoTime();
+    delegate.enqueue(new Callback<T>() {
+      @Override public void onResponse(Response<T> response) {
+        release(startNanos, isDropped(response));
+        callback.onResponse(response);
+      }
+
+      @Override public void onFailure(Throwable t) {
+        if (t instanceof IOException) {
+          release(startNanos, true);
+        } else {
+          limiter.release();
+        }
+        callback.onFailure(t);
+      }
+    });
+  }
+
+  /** Remove this call from the limiter's queue. Returns false if it was not waiting. */
+  private boolean dequeue() {
+    synchronized (this) {
+      if (queued == null || !limiter.dequeue(queued)) {
+        return false;
+      }
+      queued = null;
+      queuedCallback = null;
+      return true;
+    }
+  }
+
+  private void release(long startNanos, boolean dropped) {
+    if (canceled) {
+      limiter.release(); // Canceling says nothing about the capacity of the server.
+    } else {
+      limiter.release(System.nanoTime() - startNanos, dropped);
+    }
+  }
+
+  private static boolean isDropped(Response<?> response) {
+    return response.code() == 429 || response.code() == 503;
+  }
+
+  private ConcurrencyLimitExceededException timedOut() {
+    return new ConcurrencyLimitExceededException("Timed out waiting for a concurrency permit");
+  }
+
+  @Override public void cancel() {
+    canceled = true;
+    Callback<T> canceledCallback = null;
+    synchronized (this) {
+      if (queued != null && limiter.dequeue(queued)) {
+        canceledCallback = queuedCallback;
+        queued = null;
+        queuedCallback = null;
+      }
+    }
+    if (canceledCallback != null) {
+      canceledCallback.onFailure(new IOException("Canceled"));
+      return;
+    }
+    delegate.cancel();
+  }
+}
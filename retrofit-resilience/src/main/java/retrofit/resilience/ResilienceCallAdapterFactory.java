@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import retrofit.Call;
+import retrofit.CallAdapter;
+import retrofit.Response;
+import retrofit.Retrofit;
+import retrofit.http.DELETE;
+import retrofit.http.GET;
+import retrofit.http.HEAD;
+import retrofit.http.HTTP;
+import retrofit.http.OPTIONS;
+import retrofit.http.PUT;
+
+/**
+ * A call adapter factory which adds {@linkplain Retry retries}, {@linkplain Hedge hedged requests},
+ * and {@linkplain CircuitBreaker circuit breakers} to service methods annotated for them. Other
+ * methods are left to the next factory unless a {@linkplain #withConcurrencyLimiter concurrency
+ * limiter} applies to every method.
+ * <pre>{@code
+ * Retrofit retrofit = new Retrofit.Builder()
+ *     .baseUrl("https://api.example.com/")
+ *     .addCallAdapterFactory(ResilienceCallAdapterFactory.create())
+ *     .build();
+ * }</pre>
+ * Add this factory before any other call adapter factory. It wraps the {@link Call} before it is
+ * given to the next factory's adapter, so annotated methods may return any type that adapter
+ * supports.
+ */
+public final class ResilienceCallAdapterFactory implements CallAdapter.Factory {
+  /**
+   * Create an instance with a budget of 10 tokens and a token ratio of 0.1, and a single daemon
+   * thread to schedule retries and hedged attempts.
+   */
+  public static ResilienceCallAdapterFactory create() {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Retrofit Resilience Scheduler");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    return create(RetryBudget.create(10, 0.1), scheduler);
+  }
+
+  /**
+   * Create an instance which limits retries and hedged attempts with {@code budget} and schedules
+   * them on {@code scheduler}.
+   */
+  public static ResilienceCallAdapterFactory create(RetryBudget budget,
+      ScheduledExecutorService scheduler) {
+    if (budget == null) throw new NullPointerException("budget == null");
+    if (scheduler == null) throw new NullPointerException("scheduler == null");
+    return new ResilienceCallAdapterFactory(budget, scheduler, null);
+  }
+
+  private final RetryBudget budget;
+  private final ScheduledExecutorService scheduler;
+  private final ConcurrencyLimiter limiter; // Null if concurrency is not limited.
+
+  private ResilienceCallAdapterFactory(RetryBudget budget, ScheduledExecutorService scheduler,
+      ConcurrencyLimiter limiter) {
+    this.budget = budget;
+    this.scheduler = scheduler;
+    this.limiter = limiter;
+  }
+
+  /**
+   * Returns a factory which also holds a permit from {@code limiter} for every network attempt of
+   * every method, whether or not it is annotated.
+   */
+  public ResilienceCallAdapterFactory withConcurrencyLimiter(ConcurrencyLimiter limiter) {
+    if (limiter == null) throw new NullPointerException("limiter == null");
+    return new ResilienceCallAdapterFactory(budget, scheduler, limiter);
+  }
+
+  @Override
+  public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+    Retry retry = null;
+    Hedge hedge = null;
+    CircuitBreaker breaker = null;
+    for (Annotation annotation : annotations) {
+      if (annotation instanceof Retry) {
+        retry = (Retry) annotation;
+      } else if (annotation instanceof Hedge) {
+        hedge = (Hedge) annotation;
+      } else if (annotation instanceof CircuitBreaker) {
+        breaker = (CircuitBreaker) annotation;
+      }
+    }
+    if (retry == null && hedge == null && breaker == null && limiter == null) {
+      return null;
+    }
+    if (hedge != null && !isIdempotent(annotations)) {
+      throw new IllegalArgumentException(
+          "@Hedge requires an idempotent HTTP method (GET, HEAD, OPTIONS, PUT, or DELETE).");
+    }
+
+    RetryPolicy retryPolicy = retry != null ? new RetryPolicy(retry, budget, scheduler) : null;
+    HedgePolicy hedgePolicy = hedge != null ? new HedgePolicy(hedge, budget, scheduler) : null;
+    CircuitBreakerPolicy breakerPolicy = breaker != null ? new CircuitBreakerPolicy(breaker) : null;
+    CallAdapter<?> delegate = retrofit.nextCallAdapter(this, returnType, annotations);
+    return wrap(delegate, retryPolicy, hedgePolicy, breakerPolicy);
+  }
+
+  private <T> CallAdapter<T> wrap(CallAdapter<T> delegate, RetryPolicy retryPolicy,
+      HedgePolicy hedgePolicy, CircuitBreakerPolicy breakerPolicy) {
+    return new ResilientCallAdapter<>(delegate, retryPolicy, hedgePolicy, breakerPolicy, limiter,
+        scheduler);
+  }
+
+  /** Returns true if {@code t} rejected a call locally, so the server was never asked. */
+  static boolean isRejection(Throwable t) {
+    return t instanceof CircuitBreakerOpenException
+        || t instanceof ConcurrencyLimitExceededException;
+  }
+
+  /**
+   * Returns true if {@code t} means the call ran out of time or was interrupted, so another attempt
+   * would fail the same way. Socket timeouts are not included; a new connection may not time out.
+   */
+  static boolean isTimeUp(Throwable t) {
+    return t instanceof InterruptedIOException && !(t instanceof SocketTimeoutException);
+  }
+
+  /** Release the resources held by a response which won't be returned to the caller. */
+  static void closeQuietly(Response<?> response) {
+    Object body = response.body();
+    if (body instanceof Closeable) {
+      closeQuietly((Closeable) body);
+    }
+    closeQuietly(response.errorBody());
+    closeQuietly(response.raw().body());
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable == null) return;
+    try {
+      closeable.close();
+    } catch (IOException ignored) {
+    }
+  }
+
+  private static boolean isIdempotent(Annotation[] annotations) {
+    for (Annotation annotation : annotations) {
+      if (annotation instanceof GET
+          || annotation instanceof HEAD
+          || annotation instanceof OPTIONS
+          || annotation instanceof PUT
+          || annotation instanceof DELETE) {
+        return true;
+      }
+      if (annotation instanceof HTTP) {
+        String method = ((HTTP) annotation).method();
+        return "GET".equals(method)
+            || "HEAD".equals(method)
+            || "OPTIONS".equals(method)
+            || "PUT".equals(method)
+            || "DELETE".equals(method);
+      }
+    }
+    return false;
+  }
+
+  static final class ResilientCallAdapter<T> implements CallAdapter<T> {
+    private final CallAdapter<T> delegate;
+    private final RetryPolicy retryPolicy; // Null if the method has no @Retry.
+    private final HedgePolicy hedgePolicy; // Null if the method has no @Hedge.
+    private final CircuitBreakerPolicy breakerPolicy; // Null if the method has no @CircuitBreaker.
+    private final ConcurrencyLimiter limiter; // Null if concurrency is not limited.
+    private final ScheduledExecutorService scheduler;
+
+    ResilientCallAdapter(CallAdapter<T> delegate, RetryPolicy retryPolicy,
+        HedgePolicy hedgePolicy, CircuitBreakerPolicy breakerPolicy, ConcurrencyLimiter limiter,
+        ScheduledExecutorService scheduler) {
+      this.delegate = delegate;
+      this.retryPolicy = retryPolicy;
+      this.hedgePolicy = hedgePolicy;
+      this.breakerPolicy = breakerPolicy;
+      this.limiter = limiter;
+      this.scheduler = scheduler;
+    }
+
+    @Override public Type responseType() {
+      return delegate.responseType();
+    }
+
+    @Override public <R> T adapt(Call<R> call) {
+      // Each retry passes through the breaker, then races its own hedged attempts. Every attempt
+      // which reaches the network holds a concurrency permit.
+      if (limiter != null) {
+        call = new LimitedCall<>(call, limiter, scheduler);
+      }
+      if (hedgePolicy != null) {
+        call = new HedgingCall<>(call, hedgePolicy);
+      }
+      if (breakerPolicy != null) {
+        call = new CircuitBreakingCall<>(call, breakerPolicy);
+      }
+      if (retryPolicy != null) {
+        call = new RetryingCall<>(call, retryPolicy);
+      }
+      return delegate.adapt(call);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Retry calls to this method which fail with an {@link java.io.IOException IOException} or one of
+ * the {@linkplain #statusCodes() retryable status codes}. Each retry is a {@linkplain
+ * retrofit.Call#clone() clone} of the original call sent after an exponential backoff with full
+ * jitter, and only if the {@link RetryBudget} allows it. Calls are not retried once their call
+ * timeout has fired or their {@link retrofit.Deadline Deadline} has passed.
+ * <p>
+ * Retrying a call which is not idempotent may perform its action more than once.
+ */
+@Documented
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Retry {
+  /** The maximum number of attempts, including the first. */
+  int maxAttempts() default 3;
+
+  /** The upper bound of the delay before the first retry. It doubles with each retry. */
+  long initialBackoff() default 100;
+
+  /** The largest upper bound of the delay before any retry. */
+  long maxBackoff() default 2000;
+
+  /** The unit of {@link #initialBackoff()} and {@link #maxBackoff()}. */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+
+  /** HTTP status codes which are retried in addition to I/O failures. */
+  int[] statusCodes() default { 502, 503, 504 };
+}
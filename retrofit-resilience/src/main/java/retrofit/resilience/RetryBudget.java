@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits retries and hedged attempts so that they cannot amplify an outage. The budget holds up to
+ * {@code maxTokens} tokens. Each failed attempt takes one token and each successful attempt returns
+ * {@code tokenRatio} tokens. Extra attempts are only sent while more than half of the tokens
+ * remain, so a burst of failures turns retries off until calls succeed again.
+ * <p>
+ * Share one budget between every service calling the same backend.
+ */
+public final class RetryBudget {
+  /** Token counts are stored in thousandths so that fractional ratios are exact. */
+  private static final int SCALE = 1000;
+
+  public static RetryBudget create(int maxTokens, double tokenRatio) {
+    if (maxTokens < 1) throw new IllegalArgumentException("maxTokens < 1: " + maxTokens);
+    if (tokenRatio <= 0) throw new IllegalArgumentException("tokenRatio <= 0: " + tokenRatio);
+    return new RetryBudget(maxTokens * SCALE, (int) (tokenRatio * SCALE));
+  }
+
+  private final int maxTokens;
+  private final int tokenRatio;
+  private final AtomicInteger tokens;
+
+  private RetryBudget(int maxTokens, int tokenRatio) {
+    this.maxTokens = maxTokens;
+    this.tokenRatio = tokenRatio;
+    this.tokens = new AtomicInteger(maxTokens);
+  }
+
+  /** Returns true if a retry or hedged attempt may be sent now. */
+  public boolean canRetry() {
+    return tokens.get() > maxTokens / 2;
+  }
+
+  /** The number of tokens remaining. */
+  public double tokens() {
+    return tokens.get() / (double) SCALE;
+  }
+
+  void recordSuccess() {
+    while (true) {
+      int current = tokens.get();
+      int next = Math.min(maxTokens, current + tokenRatio);
+      if (current == next || tokens.compareAndSet(current, next)) return;
+    }
+  }
+
+  void recordFailure() {
+    while (true) {
+      int current = tokens.get();
+      int next = Math.max(0, current - SCALE);
+      if (current == next || tokens.compareAndSet(current, next)) return;
+    }
+  }
+}
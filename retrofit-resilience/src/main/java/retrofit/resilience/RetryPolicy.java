@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import retrofit.Response;
+
+/** The retry settings of one method, from its {@link Retry} annotation. */
+final class RetryPolicy {
+  final int maxAttempts;
+  private final long initialBackoffNanos;
+  private final long maxBackoffNanos;
+  private final int[] statusCodes;
+  final RetryBudget budget;
+  final ScheduledExecutorService scheduler;
+  private final Random random = new Random();
+
+  RetryPolicy(Retry retry, RetryBudget budget, ScheduledExecutorService scheduler) {
+    if (retry.maxAttempts() < 1) {
+      throw new IllegalArgumentException("@Retry maxAttempts < 1: " + retry.maxAttempts());
+    }
+    if (retry.initialBackoff() < 0 || retry.maxBackoff() < retry.initialBackoff()) {
+      throw new IllegalArgumentException(
+          "@Retry backoff must satisfy 0 <= initialBackoff <= maxBackoff.");
+    }
+    this.maxAttempts = retry.maxAttempts();
+    this.initialBackoffNanos = retry.unit().toNanos(retry.initialBackoff());
+    this.maxBackoffNanos = retry.unit().toNanos(retry.maxBackoff());
+    this.statusCodes = retry.statusCodes().clone();
+    this.budget = budget;
+    this.scheduler = scheduler;
+  }
+
+  boolean isRetryable(Response<?> response) {
+    int code = response.code();
+    for (int statusCode : statusCodes) {
+      if (code == statusCode) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns true if another attempt may follow attempt number {@code attempt}. */
+  boolean canRetry(int attempt) {
+    return attempt < maxAttempts && budget.canRetry();
+  }
+
+  /**
+   * Returns a random delay before retry number {@code retry}, between zero and an upper bound which
+   * doubles with each retry.
+   */
+  long backoffNanos(int retry) {
+    long bound = initialBackoffNanos;
+    for (int i = 1; i < retry && bound < maxBackoffNanos; i++) {
+      bound *= 2;
+    }
+    bound = Math.min(bound, maxBackoffNanos);
+    return (long) (random.nextDouble() * bound);
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Deadline;
+import retrofit.Response;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A call which retries its delegate by sending clones of it. An attempt which failed because the
+ * call timed out, or after the {@link Deadline} current when the call was created has passed, is
+ * not retried.
+ */
+final class RetryingCall<T> implements Call<T> {
+  private final Call<T> delegate;
+  private final RetryPolicy policy;
+  private final Deadline deadline; // Null if none was attached when the call was created.
+
+  private volatile Call<T> attempt;
+  private volatile boolean canceled;
+  private boolean executed; // Guarded by this.
+  private Future<?> pendingRetry; // Guarded by this.
+  private Callback<T> pendingCallback; // Guarded by this.
+
+  RetryingCall(Call<T> delegate, RetryPolicy policy) {
+    this(delegate, policy, Deadline.current());
+  }
+
+  private RetryingCall(Call<T> delegate, RetryPolicy policy, Deadline deadline) {
+    this.delegate = delegate;
+    this.policy = policy;
+    this.deadline = deadline;
+  }
+
+  @SuppressWarnings("CloneDoesntCallSuperClone") // We are a final type & this saves clearing state.
+  @Override public Call<T> clone() {
+    return new RetryingCall<>(delegate.clone(), policy, deadline);
+  }
+
+  @Override public Response<T> execute() throws IOException {
+    synchronized (this) {
+      if (executed) throw new IllegalStateException("Already executed");
+      executed = true;
+    }
+
+    for (int number = 1; ; number++) {
+      Call<T> call = newAttempt(number);
+      Response<T> response;
+      try {
+        response = call.execute();
+      } catch (IOException e) {
+        if (canceled || ResilienceCallAdapterFactory.isRejection(e)) throw e;
+        policy.budget.recordFailure();
+        if (!canRetry(number, e)) throw e;
+        sleep(policy.backoffNanos(number));
+        continue;
+      }
+      if (!policy.isRetryable(response)) {
+        policy.budget.recordSuccess();
+        return response;
+      }
+      policy.budget.recordFailure();
+      if (canceled || !canRetry(number, null)) return response;
+      ResilienceCallAdapterFactory.closeQuietly(response);
+      sleep(policy.backoffNanos(number));
+    }
+  }
+
+  /** Returns true if attempt {@code number}, which failed with {@code t} if non-null, may retry. */
+  private boolean canRetry(int number, Throwable t) {
+    if (t != null && ResilienceCallAdapterFactory.isTimeUp(t)) return false;
+    if (deadline != null && deadline.isExpired()) return false;
+    return policy.canRetry(number);
+  }
+
+  private void sleep(long nanos) throws IOException {
+    try {
+      NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted");
+    }
+    if (canceled) {
+      throw new IOException("Canceled");
+    }
+  }
+
+  @Override public void enqueue(Callback<T> callback) {
+    synchronized (this) {
+      if (executed) throw new IllegalStateException("Already executed");
+      executed = true;
+    }
+    newAttempt(1).enqueue(new AttemptCallback(1, callback));
+  }
+
+  /** Returns the call for attempt number {@code number}. The first attempt uses the delegate. */
+  private Call<T> newAttempt(int number) {
+    Call<T> call = number == 1 ? delegate : delegate.clone();
+    attempt = call;
+    if (canceled) {
+      call.cancel();
+    }
+    return call;
+  }
+
+  private void scheduleRetry(final int number, final Callback<T> callback) {
+    Runnable retry = new Runnable() {
+      @Override public void run() {
+        synchronized (RetryingCall.this) {
+          pendingRetry = null;
+          pendingCallback = null;
+        }
+        newAttempt(number).enqueue(new AttemptCallback(number, callback));
+      }
+    };
+    synchronized (this) {
+      pendingCallback = callback;
+      pendingRetry = policy.scheduler.schedule(retry, policy.backoffNanos(number - 1), NANOSECONDS);
+    }
+  }
+
+  @Override public void cancel() {
+    canceled = true;
+    Call<T> attempt = this.attempt;
+    if (attempt != null) {
+      attempt.cancel();
+    }
+
+    Callback<T> canceledCallback = null;
+    synchronized (this) {
+      if (pendingRetry != null && pendingRetry.cancel(false)) {
+        canceledCallback = pendingCallback;
+        pendingRetry = null;
+        pendingCallback = null;
+      }
+    }
+    if (canceledCallback != null) {
+      canceledCallback.onFailure(new IOException("Canceled"));
+    }
+  }
+
+  /** Receives the outcome of one attempt and either retries or reports it. */
+  final class AttemptCallback implements Callback<T> {
+    private final int number;
+    private final Callback<T> callback;
+
+    AttemptCallback(int number, Callback<T> callback) {
+      this.number = number;
+      this.callback = callback;
+    }
+
+    @Override public void onResponse(Response<T> response) {
+      if (!policy.isRetryable(response)) {
+        policy.budget.recordSuccess();
+      } else {
+        policy.budget.recordFailure();
+        if (!canceled && canRetry(number, null)) {
+          ResilienceCallAdapterFactory.closeQuietly(response);
+          scheduleRetry(number + 1, callback);
+          return;
+        }
+      }
+      callback.onResponse(response);
+    }
+
+    @Override public void onFailure(Throwable t) {
+      if (t instanceof IOException && !ResilienceCallAdapterFactory.isRejection(t) && !canceled) {
+        policy.budget.recordFailure();
+        if (canRetry(number, t)) {
+          scheduleRetry(number + 1, callback);
+          return;
+        }
+      }
+      callback.onFailure(t);
+    }
+  }
+}
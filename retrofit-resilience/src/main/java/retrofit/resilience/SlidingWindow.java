@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counts calls, failures, and slow calls over a sliding window of time without locking. The window
+ * is divided into buckets; a bucket is replaced when its time comes around again.
+ */
+final class SlidingWindow {
+  private static final int BUCKET_COUNT = 10;
+
+  private final long bucketNanos;
+  /** Epochs count from here so that they are never negative. */
+  private final long originNanos = System.nanoTime();
+  private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKET_COUNT);
+
+  SlidingWindow(long windowNanos) {
+    this.bucketNanos = Math.max(1, windowNanos / BUCKET_COUNT);
+  }
+
+  void record(long nowNanos, boolean failure, boolean slow) {
+    Bucket bucket = bucket((nowNanos - originNanos) / bucketNanos);
+    bucket.calls.incrementAndGet();
+    if (failure) bucket.failures.incrementAndGet();
+    if (slow) bucket.slowCalls.incrementAndGet();
+  }
+
+  /** Returns the bucket for {@code epoch}, replacing a stale one from an earlier lap. */
+  private Bucket bucket(long epoch) {
+    int index = (int) (epoch % BUCKET_COUNT);
+    while (true) {
+      Bucket current = buckets.get(index);
+      if (current != null && current.epoch == epoch) {
+        return current;
+      }
+      Bucket replacement = new Bucket(epoch);
+      if (buckets.compareAndSet(index, current, replacement)) {
+        return replacement;
+      }
+    }
+  }
+
+  /** Returns the sums of the buckets within the window ending at {@code nowNanos}. */
+  Snapshot snapshot(long nowNanos) {
+    long epoch = (nowNanos - originNanos) / bucketNanos;
+    int calls = 0;
+    int failures = 0;
+    int slowCalls = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      Bucket bucket = buckets.get(i);
+      if (bucket != null && epoch - bucket.epoch < BUCKET_COUNT) {
+        calls += bucket.calls.get();
+        failures += bucket.failures.get();
+        slowCalls += bucket.slowCalls.get();
+      }
+    }
+    return new Snapshot(calls, failures, slowCalls);
+  }
+
+  void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets.set(i, null);
+    }
+  }
+
+  static final class Bucket {
+    final long epoch;
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicInteger failures = new AtomicInteger();
+    final AtomicInteger slowCalls = new AtomicInteger();
+
+    Bucket(long epoch) {
+      this.epoch = epoch;
+    }
+  }
+
+  static final class Snapshot {
+    final int calls;
+    final int failures;
+    final int slowCalls;
+
+    Snapshot(int calls, int failures, int slowCalls) {
+      this.calls = calls;
+      this.failures = failures;
+      this.slowCalls = slowCalls;
+    }
+  }
+}
@@ -0,0 +1,422 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.resilience;
+
+import com.squareup.okhttp.ResponseBody;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Rule;
+import org.junit.Test;
+import retrofit.Call;
+import retrofit.Callback;
+import retrofit.Converter;
+import retrofit.Deadline;
+import retrofit.Response;
+import retrofit.Retrofit;
+import retrofit.http.GET;
+import retrofit.http.POST;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class ResilienceCallAdapterFactoryTest {
+  @Rule public final MockWebServer server = new MockWebServer();
+
+  interface Service {
+    @GET("/") Call<String> plain();
+    @GET("/") @Retry(initialBackoff = 1, maxBackoff = 10) Call<String> retried();
+    @GET("/") @Retry(maxAttempts = 2, initialBackoff = 1, maxBackoff = 10)
+    Call<String> retriedTwice();
+    @GET("/") @Hedge(delay = 50) Call<String> hedged();
+    @POST("/") @Hedge(delay = 50) Call<String> hedgedPost();
+    @GET("/") @Hedge(delay = 500) Call<String> hedgedSlowly();
+    @GET("/") @CircuitBreaker(minimumCalls = 2, openDuration = 200, halfOpenCalls = 1)
+    Call<String> guarded();
+  }
+
+  private Service service(ResilienceCallAdapterFactory factory) {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new StringConverterFactory())
+        .addCallAdapterFactory(factory)
+        .build();
+    return retrofit.create(Service.class);
+  }
+
+  @Test public void unannotatedMethodsAreNotWrapped() throws NoSuchMethodException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .build();
+    Method method = Service.class.getDeclaredMethod("plain");
+    assertThat(ResilienceCallAdapterFactory.create()
+        .get(method.getGenericReturnType(), method.getAnnotations(), retrofit)).isNull();
+  }
+
+  @Test public void retriesRetryableStatusCodes() throws IOException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    Response<String> response = service.retried().execute();
+    assertThat(response.body()).isEqualTo("Hi");
+    assertThat(server.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test public void retriesAsync() throws InterruptedException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    final AtomicReference<Response<String>> responseRef = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    service.retried().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        responseRef.set(response);
+        latch.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        throw new AssertionError(t);
+      }
+    });
+    assertTrue(latch.await(2, SECONDS));
+    assertThat(responseRef.get().body()).isEqualTo("Hi");
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void stopsAfterMaxAttempts() throws IOException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    Response<String> response = service.retriedTwice().execute();
+    assertThat(response.code()).isEqualTo(503);
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void clientErrorsAreNotRetried() throws IOException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setResponseCode(404));
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    Response<String> response = service.retried().execute();
+    assertThat(response.code()).isEqualTo(404);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void expiredDeadlineIsNotRetried() throws IOException {
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    Deadline deadline = Deadline.after(200, MILLISECONDS);
+    Deadline previous = deadline.attach();
+    Call<String> call;
+    try {
+      call = service(ResilienceCallAdapterFactory.create()).retried();
+    } finally {
+      deadline.detach(previous);
+    }
+    try {
+      call.execute();
+      fail();
+    } catch (InterruptedIOException e) {
+      assertThat(e).hasMessage("timeout");
+    }
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void exhaustedBudgetStopsRetries() throws IOException {
+    // A budget of 2 tokens allows no retries once a single failure has taken one.
+    RetryBudget budget = RetryBudget.create(2, 0.1);
+    Service service = service(ResilienceCallAdapterFactory.create(budget,
+        Executors.newSingleThreadScheduledExecutor()));
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    Response<String> response = service.retried().execute();
+    assertThat(response.code()).isEqualTo(503);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+    assertThat(budget.canRetry()).isFalse();
+  }
+
+  @Test public void slowCallIsHedged() throws IOException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger requests = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (requests.incrementAndGet() == 1) {
+          release.await(); // The first replica is slow.
+          return new MockResponse().setBody("Slow");
+        }
+        return new MockResponse().setBody("Hedged");
+      }
+    });
+    Service service = service(ResilienceCallAdapterFactory.create());
+
+    try {
+      Response<String> response = service.hedged().execute();
+      assertThat(response.body()).isEqualTo("Hedged");
+      assertThat(requests.get()).isEqualTo(2);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test public void fastCallIsNotHedged() throws IOException, InterruptedException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    assertThat(service.hedged().execute().body()).isEqualTo("Hi");
+    Thread.sleep(100); // Longer than the hedging delay.
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void expiredDeadlineIsNotHedged() throws IOException {
+    RetryBudget budget = RetryBudget.create(10, 0.1);
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    Deadline deadline = Deadline.after(200, MILLISECONDS);
+    Deadline previous = deadline.attach();
+    Call<String> call;
+    try {
+      call = service(ResilienceCallAdapterFactory.create(budget,
+          Executors.newSingleThreadScheduledExecutor())).hedgedSlowly();
+    } finally {
+      deadline.detach(previous);
+    }
+    double tokens = budget.tokens();
+    try {
+      call.execute();
+      fail();
+    } catch (InterruptedIOException e) {
+      assertThat(e).hasMessage("timeout");
+    }
+    assertThat(budget.tokens()).isEqualTo(tokens);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void hedgingNonIdempotentMethodThrows() {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    try {
+      service.hedgedPost();
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getCause()).hasMessage(
+          "@Hedge requires an idempotent HTTP method (GET, HEAD, OPTIONS, PUT, or DELETE).");
+    }
+  }
+
+  @Test public void plainMethodIsNotRetried() throws IOException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setResponseCode(503));
+
+    assertThat(service.plain().execute().code()).isEqualTo(503);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void circuitBreakerOpensAndRecovers() throws IOException, InterruptedException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setResponseCode(503));
+
+    assertThat(service.guarded().execute().code()).isEqualTo(503);
+    assertThat(service.guarded().execute().code()).isEqualTo(503);
+    try {
+      service.guarded().execute();
+      fail();
+    } catch (CircuitBreakerOpenException e) {
+      assertThat(e).hasMessage("Circuit breaker is open");
+    }
+    assertThat(server.getRequestCount()).isEqualTo(2);
+
+    Thread.sleep(300); // Longer than the open duration.
+    server.enqueue(new MockResponse().setBody("Hi"));
+    server.enqueue(new MockResponse().setBody("Hi again"));
+    assertThat(service.guarded().execute().body()).isEqualTo("Hi");
+    assertThat(service.guarded().execute().body()).isEqualTo("Hi again");
+  }
+
+  @Test public void halfOpenPermitsAreReleasedToTheirOwnState()
+      throws NoSuchMethodException, InterruptedException {
+    CircuitBreaker breaker =
+        Service.class.getDeclaredMethod("guarded").getAnnotation(CircuitBreaker.class);
+    CircuitBreakerPolicy policy = new CircuitBreakerPolicy(breaker);
+    policy.record(policy.tryAcquire(), true, 0);
+    policy.record(policy.tryAcquire(), true, 0);
+    assertThat(policy.tryAcquire()).isNull();
+
+    Thread.sleep(300); // Longer than the open duration.
+    CircuitBreakerPolicy.State trial = policy.tryAcquire();
+    assertThat(trial).isNotNull();
+    for (int i = 0; i < 10; i++) {
+      assertThat(policy.tryAcquire()).isNull();
+    }
+    policy.release(trial);
+    CircuitBreakerPolicy.State retrial = policy.tryAcquire();
+    assertThat(retrial).isSameAs(trial);
+
+    // The trial fails and the breaker opens again. Releasing a permit taken from the half-open
+    // state must not let calls through the newly opened one.
+    policy.record(retrial, true, 0);
+    policy.release(retrial);
+    assertThat(policy.tryAcquire()).isNull();
+  }
+
+  @Test public void openCircuitBreakerFailsAsyncCallsImmediately() throws IOException {
+    Service service = service(ResilienceCallAdapterFactory.create());
+    server.enqueue(new MockResponse().setResponseCode(500));
+    server.enqueue(new MockResponse().setResponseCode(500));
+    service.guarded().execute();
+    service.guarded().execute();
+
+    final AtomicReference<Throwable> failureRef = new AtomicReference<>();
+    service.guarded().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        throw new AssertionError();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        failureRef.set(t);
+      }
+    });
+    assertThat(failureRef.get()).isInstanceOf(CircuitBreakerOpenException.class);
+  }
+
+  @Test public void callsOverTheConcurrencyLimitAreRejected()
+      throws IOException, InterruptedException {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+        .initialLimit(1)
+        .build();
+    Service service = service(ResilienceCallAdapterFactory.create()
+        .withConcurrencyLimiter(limiter));
+    final CountDownLatch release = new CountDownLatch(1);
+    server.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        release.await(10, SECONDS);
+        return new MockResponse().setBody("Hi");
+      }
+    });
+
+    final CountDownLatch done = new CountDownLatch(1);
+    service.plain().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        done.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        throw new AssertionError(t);
+      }
+    });
+    assertThat(limiter.inFlight()).isEqualTo(1);
+
+    try {
+      service.retried().execute();
+      fail();
+    } catch (ConcurrencyLimitExceededException e) {
+      assertThat(e).hasMessage("Concurrency limit of 1 exceeded");
+    }
+
+    release.countDown();
+    assertTrue(done.await(10, SECONDS));
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void hedgeRejectedByConcurrencyLimitIsNotHedgedAgain()
+      throws IOException, InterruptedException {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+        .initialLimit(1)
+        .build();
+    RetryBudget budget = RetryBudget.create(10, 0.1);
+    Service service = service(ResilienceCallAdapterFactory.create(budget,
+        Executors.newSingleThreadScheduledExecutor())
+        .withConcurrencyLimiter(limiter));
+    final CountDownLatch release = new CountDownLatch(1);
+    server.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        release.await(10, SECONDS);
+        return new MockResponse().setBody("Hi");
+      }
+    });
+
+    final CountDownLatch done = new CountDownLatch(1);
+    service.plain().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        done.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        throw new AssertionError(t);
+      }
+    });
+    assertThat(limiter.inFlight()).isEqualTo(1);
+
+    double tokens = budget.tokens();
+    try {
+      service.hedged().execute();
+      fail();
+    } catch (ConcurrencyLimitExceededException e) {
+      assertThat(e).hasMessage("Concurrency limit of 1 exceeded");
+    }
+    Thread.sleep(100); // Longer than the hedging delay.
+    assertThat(budget.tokens()).isEqualTo(tokens);
+
+    release.countDown();
+    assertTrue(done.await(10, SECONDS));
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void concurrencyLimitShrinksWhenTheServerDropsCalls() throws IOException {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+        .initialLimit(10)
+        .build();
+    Service service = service(ResilienceCallAdapterFactory.create()
+        .withConcurrencyLimiter(limiter));
+    server.enqueue(new MockResponse().setResponseCode(503));
+
+    assertThat(service.plain().execute().code()).isEqualTo(503);
+    assertThat(limiter.limit()).isEqualTo(9);
+    assertThat(limiter.inFlight()).isEqualTo(0);
+  }
+
+  static class StringConverterFactory extends Converter.Factory {
+    @Override
+    public Converter<ResponseBody, ?> fromResponseBody(Type type, Annotation[] annotations) {
+      return new Converter<ResponseBody, String>() {
+        @Override public String convert(ResponseBody value) throws IOException {
+          return value.string();
+        }
+      };
+    }
+  }
+}
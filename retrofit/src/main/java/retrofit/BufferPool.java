@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Scratch buffers which converters can borrow to serialize request bodies without allocating a new
+ * {@link Buffer} and {@link Writer} for each one.
+ * <pre>
+ * BufferPool.Lease lease = BufferPool.acquire();
+ * try {
+ *   JsonWriter jsonWriter = gson.newJsonWriter(lease.writer());
+ *   adapter.write(jsonWriter, value);
+ *   jsonWriter.flush();
+ *   return RequestBody.create(MEDIA_TYPE, lease.readByteString());
+ * } finally {
+ *   lease.release();
+ * }
+ * </pre>
+ * Each thread retains one lease. While idle it holds no bytes, only the writer's fixed-size
+ * encoding buffer; Okio returns the buffer's segments to its own pool as they are read. A lease
+ * acquired while the thread's lease is in use, such as by a converter which delegates to another,
+ * is not pooled.
+ * <p>
+ * Virtual threads, such as those used by {@link Retrofit.Builder#useVirtualThreads}, usually run
+ * a single call before they exit, so a per-thread lease would never be reused. Leases acquired on
+ * a virtual thread are not pooled.
+ */
+public final class BufferPool {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final ThreadLocal<Lease> LEASES = new ThreadLocal<Lease>() {
+    @Override protected Lease initialValue() {
+      return new Lease(true);
+    }
+  };
+
+  private BufferPool() {
+    throw new AssertionError("No instances.");
+  }
+
+  /** Borrow an empty buffer. Call {@link Lease#release()} when finished with it. */
+  public static Lease acquire() {
+    if (Platform.get().isVirtualThread()) {
+      return new Lease(false);
+    }
+    Lease lease = LEASES.get();
+    if (lease.inUse) {
+      return new Lease(false);
+    }
+    lease.inUse = true;
+    return lease;
+  }
+
+  /** A borrowed buffer and a UTF-8 writer which appends to it. */
+  public static final class Lease {
+    private final boolean pooled;
+    private final Buffer buffer = new Buffer();
+    private Writer writer;
+    private boolean inUse;
+    private boolean consumed;
+
+    Lease(boolean pooled) {
+      this.pooled = pooled;
+    }
+
+    /** The borrowed buffer. It is empty when the lease is acquired. */
+    public Buffer buffer() {
+      return buffer;
+    }
+
+    /**
+     * Returns a writer which encodes characters as UTF-8 into {@link #buffer()}. Characters may be
+     * held by the writer until it is flushed; {@link #readByteString()} flushes it.
+     */
+    public Writer writer() {
+      Writer writer = this.writer;
+      if (writer == null) {
+        writer = this.writer = new OutputStreamWriter(buffer.outputStream(), UTF_8);
+      }
+      return writer;
+    }
+
+    /** Flush the writer and remove every byte from the buffer. */
+    public ByteString readByteString() throws IOException {
+      if (writer != null) {
+        writer.flush();
+      }
+      consumed = true;
+      return buffer.readByteString();
+    }
+
+    /** Return this lease. It must not be used afterwards. */
+    public void release() {
+      if (!consumed) {
+        // Serialization failed part way. The writer may hold half of a character, so drop it.
+        writer = null;
+      }
+      buffer.clear();
+      consumed = false;
+      if (pooled) {
+        inUse = false;
+      }
+    }
+  }
+}
@@ -20,16 +20,28 @@ import com.squareup.okhttp.ResponseBody;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import okio.Buffer;
+import okio.BufferedSource;
 import retrofit.http.Streaming;
 
 import static retrofit.Utils.closeQuietly;
 
 final class BuiltInConverters extends Converter.Factory {
+  private final long responseBodyBufferLimit;
   private OkHttpResponseBodyConverter streamingResponseBodyConverter;
   private OkHttpResponseBodyConverter bufferingResponseBodyConverter;
+  private SourceConverter sourceConverter;
   private VoidConverter voidResponseBodyConverter;
   private OkHttpRequestBodyConverter requestBodyConverter;
 
+  BuiltInConverters() {
+    this(Long.MAX_VALUE);
+  }
+
+  BuiltInConverters(long responseBodyBufferLimit) {
+    this.responseBodyBufferLimit = responseBodyBufferLimit;
+  }
+
   @Override
   public Converter<ResponseBody, ?> fromResponseBody(Type type, Annotation[] annotations) {
     if (ResponseBody.class == type) {
@@ -37,14 +49,21 @@ final class BuiltInConverters extends Converter.Factory {
         OkHttpResponseBodyConverter converter = streamingResponseBodyConverter;
         return converter != null
             ? converter
-            : (streamingResponseBodyConverter = new OkHttpResponseBodyConverter(true));
+            : (streamingResponseBodyConverter = new OkHttpResponseBodyConverter(true, 0));
       } else {
         OkHttpResponseBodyConverter converter = bufferingResponseBodyConverter;
         return converter != null
             ? converter
-            : (bufferingResponseBodyConverter = new OkHttpResponseBodyConverter(false));
+            : (bufferingResponseBodyConverter =
+                new OkHttpResponseBodyConverter(false, responseBodyBufferLimit));
       }
     }
+    if (BufferedSource.class == type) {
+      SourceConverter converter = sourceConverter;
+      return converter != null
+          ? converter
+          : (sourceConverter = new SourceConverter());
+    }
     if (Void.class == type) {
       VoidConverter converter = voidResponseBodyConverter;
       return converter != null
@@ -76,11 +95,20 @@ final class BuiltInConverters extends Converter.Factory {
     }
   }
 
+  /** Hands the unread body to the caller, who takes ownership of it and must close it. */
+  static final class SourceConverter implements Converter<ResponseBody, BufferedSource> {
+    @Override public BufferedSource convert(ResponseBody value) throws IOException {
+      return value.source();
+    }
+  }
+
   static final class OkHttpResponseBodyConverter implements Converter<ResponseBody, ResponseBody> {
     private final boolean isStreaming;
+    private final long bufferLimit;
 
-    OkHttpResponseBodyConverter(boolean isStreaming) {
+    OkHttpResponseBodyConverter(boolean isStreaming, long bufferLimit) {
       this.isStreaming = isStreaming;
+      this.bufferLimit = bufferLimit;
     }
 
     @Override public ResponseBody convert(ResponseBody value) throws IOException {
@@ -88,6 +116,14 @@ final class BuiltInConverters extends Converter.Factory {
         return value;
       }
 
+      long contentLength = value.contentLength();
+      if (contentLength > bufferLimit) {
+        return value; // Too large to buffer. The caller owns the stream.
+      }
+      if (contentLength == -1 && bufferLimit != Long.MAX_VALUE) {
+        return bufferUpToLimit(value);
+      }
+
       // Buffer the entire body to avoid future I/O.
       try {
         return Utils.readBodyToBytesIfNecessary(value);
@@ -95,5 +131,27 @@ final class BuiltInConverters extends Converter.Factory {
         closeQuietly(value);
       }
     }
+
+    /**
+     * Buffers a body of unknown length if it is no larger than {@link #bufferLimit}. Otherwise the
+     * bytes read so far are kept in front of the rest of the stream, which the caller owns.
+     */
+    private ResponseBody bufferUpToLimit(ResponseBody value) throws IOException {
+      BufferedSource source = value.source();
+      boolean streaming = false;
+      try {
+        if (source.request(bufferLimit + 1)) {
+          streaming = true;
+          return ResponseBody.create(value.contentType(), -1, source);
+        }
+        Buffer buffer = new Buffer();
+        buffer.writeAll(source);
+        return ResponseBody.create(value.contentType(), buffer.size(), buffer);
+      } finally {
+        if (!streaming) {
+          closeQuietly(value);
+        }
+      }
+    }
   }
 }
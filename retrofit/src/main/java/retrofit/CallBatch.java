@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static retrofit.Utils.checkNotNull;
+
+/**
+ * Executes many calls concurrently and collects their responses in order. Calls are started with
+ * {@link Call#enqueue} so they share the HTTP client's dispatcher, and at most {@linkplain
+ * Builder#maxConcurrency the maximum concurrency} are in flight at once.
+ * <pre>{@code
+ * CallBatch batch = new CallBatch.Builder()
+ *     .maxConcurrency(16)
+ *     .timeout(500, MILLISECONDS)
+ *     .cancelOnFailure(true)
+ *     .build();
+ * List<Response<User>> responses = batch.execute(calls);
+ * }</pre>
+ * Like {@link Call#execute}, a non-2xx HTTP response is not a failure. A failure is an exception
+ * delivered to {@link Callback#onFailure}. When the batch fails or times out, every call it started
+ * is canceled and no further calls are started.
+ * <p>
+ * {@link #execute} blocks the calling thread until the calls' callbacks have run. Callbacks are
+ * delivered by the {@link Retrofit#callbackExecutor() callback executor}, so never execute a batch
+ * on the thread that executor posts to. On Android the default executor posts to the main thread,
+ * and executing a batch there deadlocks.
+ */
+public final class CallBatch {
+  private final int maxConcurrency;
+  private final long timeoutNanos;
+  private final boolean cancelOnFailure;
+
+  CallBatch(int maxConcurrency, long timeoutNanos, boolean cancelOnFailure) {
+    this.maxConcurrency = maxConcurrency;
+    this.timeoutNanos = timeoutNanos;
+    this.cancelOnFailure = cancelOnFailure;
+  }
+
+  /**
+   * Execute {@code calls} and return their responses in the same order, blocking until their
+   * callbacks have run. None of the calls may have been executed already; if one has, the calls
+   * already started are canceled and its exception is thrown.
+   *
+   * @throws InterruptedIOException if the timeout elapses or the calling thread is interrupted
+   * before every call completes.
+   * @throws IOException the first failure. Unless {@linkplain Builder#cancelOnFailure canceling on
+   * failure}, this is thrown once the remaining calls have completed.
+   */
+  public <T> List<Response<T>> execute(List<? extends Call<T>> calls) throws IOException {
+    checkNotNull(calls, "calls == null");
+    List<Call<T>> callsCopy = new ArrayList<>(calls);
+    if (callsCopy.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return new Execution<>(callsCopy, cancelOnFailure).run(maxConcurrency, timeoutNanos);
+  }
+
+  /** The state of one {@link #execute} invocation. */
+  static final class Execution<T> {
+    private final List<Call<T>> calls;
+    private final boolean cancelOnFailure;
+    private final Response<?>[] responses;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private volatile boolean stopped;
+    private int completed; // Guarded by this.
+    private Throwable failure; // Guarded by this.
+
+    Execution(List<Call<T>> calls, boolean cancelOnFailure) {
+      this.calls = calls;
+      this.cancelOnFailure = cancelOnFailure;
+      this.responses = new Response<?>[calls.size()];
+    }
+
+    List<Response<T>> run(int maxConcurrency, long timeoutNanos) throws IOException {
+      int count = calls.size();
+      try {
+        for (int i = 0, initial = Math.min(maxConcurrency, count); i < initial; i++) {
+          startNext();
+        }
+      } catch (RuntimeException | Error e) {
+        stop();
+        throw e;
+      }
+
+      Throwable thrown;
+      try {
+        thrown = await(timeoutNanos);
+      } catch (InterruptedException e) {
+        stop();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted");
+      }
+      if (thrown == null && !isComplete()) {
+        stop();
+        throw new InterruptedIOException("timeout");
+      }
+      if (thrown != null) {
+        stop();
+        if (thrown instanceof IOException) throw (IOException) thrown;
+        if (thrown instanceof RuntimeException) throw (RuntimeException) thrown;
+        if (thrown instanceof Error) throw (Error) thrown;
+        throw new RuntimeException(thrown);
+      }
+
+      @SuppressWarnings("unchecked") // Each slot was filled with a Response<T>.
+      List<Response<T>> result = (List<Response<T>>) (List<?>) Arrays.asList(responses);
+      return result;
+    }
+
+    /**
+     * Waits until every call has completed, or the first failure when canceling on failure, or the
+     * timeout elapses. Returns the failure to report, if any.
+     */
+    private synchronized Throwable await(long timeoutNanos) throws InterruptedException {
+      long deadline = System.nanoTime() + timeoutNanos;
+      while (completed < calls.size() && !((cancelOnFailure || stopped) && failure != null)) {
+        if (timeoutNanos == 0) {
+          wait();
+          continue;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) break;
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return completed == calls.size() || cancelOnFailure || stopped ? failure : null;
+    }
+
+    private synchronized boolean isComplete() {
+      return completed == calls.size();
+    }
+
+    private void startNext() {
+      if (stopped) return;
+      int index = nextIndex.getAndIncrement();
+      if (index >= calls.size()) return;
+
+      Call<T> call = calls.get(index);
+      call.enqueue(new Slot(index));
+      if (stopped) {
+        call.cancel(); // Lost a race with stop().
+      }
+    }
+
+    /**
+     * Start the next call from a callback. If it cannot be started, fail the batch rather than
+     * leave {@link #run} waiting for a call that will never complete.
+     */
+    private void startNextFromCallback() {
+      try {
+        startNext();
+      } catch (RuntimeException | Error e) {
+        stop();
+        synchronized (this) {
+          if (failure == null) {
+            failure = e;
+          }
+          notifyAll();
+        }
+      }
+    }
+
+    /** Cancel every call already started and start no others. */
+    private void stop() {
+      stopped = true;
+      for (int i = 0, started = Math.min(nextIndex.get(), calls.size()); i < started; i++) {
+        calls.get(i).cancel();
+      }
+    }
+
+    final class Slot implements Callback<T> {
+      private final int index;
+
+      Slot(int index) {
+        this.index = index;
+      }
+
+      @Override public void onResponse(Response<T> response) {
+        synchronized (Execution.this) {
+          responses[index] = response;
+          completed++;
+          Execution.this.notifyAll();
+        }
+        startNextFromCallback();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        synchronized (Execution.this) {
+          if (failure == null) {
+            failure = t;
+          }
+          completed++;
+          Execution.this.notifyAll();
+        }
+        if (!cancelOnFailure) {
+          startNextFromCallback();
+        }
+      }
+    }
+  }
+
+  /** Build a new {@link CallBatch}. */
+  public static final class Builder {
+    private int maxConcurrency = Integer.MAX_VALUE;
+    private long timeoutNanos;
+    private boolean cancelOnFailure;
+
+    /**
+     * The maximum number of calls in flight at once. By default every call is started immediately,
+     * subject to the limits of the HTTP client's dispatcher.
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      if (maxConcurrency < 1) {
+        throw new IllegalArgumentException("maxConcurrency < 1: " + maxConcurrency);
+      }
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * The overall time allowed for every call in a batch to complete. When it elapses, calls still
+     * in flight are canceled. A timeout of 0 means no timeout, which is the default.
+     */
+    public Builder timeout(long timeout, TimeUnit unit) {
+      if (timeout < 0) throw new IllegalArgumentException("timeout < 0: " + timeout);
+      checkNotNull(unit, "unit == null");
+      this.timeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /**
+     * When true, the first failure cancels the calls still in flight and is thrown immediately.
+     * Otherwise the remaining calls run to completion before the first failure is thrown.
+     */
+    public Builder cancelOnFailure(boolean cancelOnFailure) {
+      this.cancelOnFailure = cancelOnFailure;
+      return this;
+    }
+
+    /** Create the {@link CallBatch} instance. */
+    public CallBatch build() {
+      return new CallBatch(maxConcurrency, timeoutNanos, cancelOnFailure);
+    }
+  }
+}
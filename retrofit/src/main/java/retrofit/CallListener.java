@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.Request;
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * Observes the phases of a single call so their latency can be measured. Register a factory with
+ * Retrofit using {@link Retrofit.Builder#callListenerFactory(Factory)}.
+ * <p>
+ * Events are reported on whichever thread performs the phase. Each {@code Start} event is followed
+ * by its {@code End} event unless the phase throws. Calls served from the
+ * {@linkplain ResponseCache response cache} or sharing a coalesced network call do not report
+ * network events.
+ * <p>
+ * Listeners run inline with the call. Keep them fast and do not throw.
+ */
+public abstract class CallListener {
+  /** A listener which ignores every event. */
+  public static final CallListener NONE = new CallListener() {
+  };
+
+  /** Arguments are about to be converted into a request. */
+  public void requestBuildStart() {
+  }
+
+  /** The request was built from the arguments. */
+  public void requestBuildEnd(Request request) {
+  }
+
+  /** {@code request} is about to be sent to the HTTP client. */
+  public void networkStart(Request request) {
+  }
+
+  /** The response headers for the call were received. The body has not been read yet. */
+  public void networkEnd(com.squareup.okhttp.Response response) {
+  }
+
+  /** The HTTP client failed to return a response. */
+  public void networkFailed(IOException e) {
+  }
+
+  /**
+   * The response body is about to be converted. This includes reading the body from the network.
+   */
+  public void conversionStart() {
+  }
+
+  /** The response body converter returned or threw. */
+  public void conversionEnd() {
+  }
+
+  /** The outcome of an asynchronous call was handed to the callback executor. */
+  public void callbackDispatchStart() {
+  }
+
+  /**
+   * The callback executor is about to invoke the callback. The time since
+   * {@link #callbackDispatchStart()} was spent waiting in the executor's queue.
+   */
+  public void callbackDispatchEnd() {
+  }
+
+  /** Creates a {@link CallListener} for each call. */
+  public abstract static class Factory {
+    /** Returns a listener for a new call to {@code method}. */
+    public abstract CallListener create(Method method);
+
+    /**
+     * The annotations of {@code method} were parsed and its call adapter and converters were
+     * located. This happens once per method, when it is first called or validated.
+     */
+    public void methodHandlerCreated(Method method, long durationNanos) {
+    }
+  }
+}
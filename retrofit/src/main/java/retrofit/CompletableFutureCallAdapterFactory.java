@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+/**
+ * A call adapter for {@code CompletableFuture<T>} and {@code CompletableFuture<Response<T>>}.
+ * The future is completed directly on the thread which delivers the {@link Call}'s callback. This
+ * is OkHttp's dispatcher thread, with no hop through the callback executor. Cancelling the future
+ * cancels the underlying call.
+ * <p>
+ * A future of the body type is completed exceptionally with an {@link HttpException} for non-2xx
+ * responses. A future of {@link Response} is completed normally for every HTTP response.
+ */
+@IgnoreJRERequirement // Only classloaded and used on Java 8.
+final class CompletableFutureCallAdapterFactory implements CallAdapter.Factory {
+  static final CompletableFutureCallAdapterFactory INSTANCE =
+      new CompletableFutureCallAdapterFactory();
+
+  @Override
+  public CallAdapter<?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+    if (Utils.getRawType(returnType) != CompletableFuture.class) {
+      return null;
+    }
+    if (!(returnType instanceof ParameterizedType)) {
+      throw new IllegalStateException("CompletableFuture return type must be parameterized"
+          + " as CompletableFuture<Foo> or CompletableFuture<? extends Foo>");
+    }
+    Type innerType = Utils.getSingleParameterUpperBound((ParameterizedType) returnType);
+
+    if (Utils.getRawType(innerType) != Response.class) {
+      return new BodyCallAdapter(innerType);
+    }
+    if (!(innerType instanceof ParameterizedType)) {
+      throw new IllegalStateException("Response must be parameterized"
+          + " as Response<Foo> or Response<? extends Foo>");
+    }
+    Type responseType = Utils.getSingleParameterUpperBound((ParameterizedType) innerType);
+    return new ResponseCallAdapter(responseType);
+  }
+
+  @IgnoreJRERequirement
+  static final class BodyCallAdapter implements CallAdapter<CompletableFuture<?>> {
+    private final Type responseType;
+
+    BodyCallAdapter(Type responseType) {
+      this.responseType = responseType;
+    }
+
+    @Override public Type responseType() {
+      return responseType;
+    }
+
+    @Override public <R> CompletableFuture<R> adapt(Call<R> call) {
+      final CallFuture<R> future = new CallFuture<>(call);
+      call.enqueue(new Callback<R>() {
+        @Override public void onResponse(Response<R> response) {
+          if (response.isSuccess()) {
+            future.complete(response.body());
+          } else {
+            future.completeExceptionally(new HttpException(response));
+          }
+        }
+
+        @Override public void onFailure(Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+      return future;
+    }
+  }
+
+  @IgnoreJRERequirement
+  static final class ResponseCallAdapter implements CallAdapter<CompletableFuture<?>> {
+    private final Type responseType;
+
+    ResponseCallAdapter(Type responseType) {
+      this.responseType = responseType;
+    }
+
+    @Override public Type responseType() {
+      return responseType;
+    }
+
+    @Override public <R> CompletableFuture<Response<R>> adapt(Call<R> call) {
+      final CallFuture<Response<R>> future = new CallFuture<>(call);
+      call.enqueue(new Callback<R>() {
+        @Override public void onResponse(Response<R> response) {
+          future.complete(response);
+        }
+
+        @Override public void onFailure(Throwable t) {
+          future.completeExceptionally(t);
+        }
+      });
+      return future;
+    }
+  }
+
+  /** A future which cancels its call when it is cancelled. */
+  @IgnoreJRERequirement
+  static final class CallFuture<T> extends CompletableFuture<T> {
+    private final Call<?> call;
+
+    CallFuture(Call<?> call) {
+      this.call = call;
+    }
+
+    @Override public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        call.cancel();
+      }
+      return cancelled;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+/** Identifies converter lookups with equal types and annotations, which find the same converter. */
+final class ConverterKey {
+  final Type type;
+  final Annotation[] annotations;
+  private final int hashCode;
+
+  ConverterKey(Type type, Annotation[] annotations) {
+    this.type = type;
+    this.annotations = annotations;
+    this.hashCode = 31 * type.hashCode() + Arrays.hashCode(annotations);
+  }
+
+  /** Returns a key which is not affected by later changes to the caller's annotations array. */
+  ConverterKey copy() {
+    return new ConverterKey(type, annotations.clone());
+  }
+
+  @Override public boolean equals(Object other) {
+    if (!(other instanceof ConverterKey)) return false;
+    ConverterKey that = (ConverterKey) other;
+    return hashCode == that.hashCode
+        && type.equals(that.type)
+        && (annotations == that.annotations || Arrays.equals(annotations, that.annotations));
+  }
+
+  @Override public int hashCode() {
+    return hashCode;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.util.concurrent.TimeUnit;
+
+import static retrofit.Utils.checkNotNull;
+
+/**
+ * A point in time by which calls must complete. Attach a deadline to a thread and every call
+ * created on that thread honors it:
+ * <pre>{@code
+ * Deadline deadline = Deadline.after(300, MILLISECONDS);
+ * Deadline previous = deadline.attach();
+ * try {
+ *   User user = service.user(id).execute().body();
+ *   List<Repo> repos = service.repos(user.login).execute().body();
+ * } finally {
+ *   deadline.detach(previous);
+ * }
+ * }</pre>
+ * A call captures the current deadline when it is created, and {@linkplain Call#clone clones} keep
+ * it. If the deadline has already passed when the call is executed, the call fails with an
+ * {@link java.io.InterruptedIOException InterruptedIOException} without making a request. If it
+ * passes while the call is in flight, the call is canceled and fails the same way.
+ */
+public final class Deadline {
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  /** Returns a deadline {@code duration} from now. */
+  public static Deadline after(long duration, TimeUnit unit) {
+    checkNotNull(unit, "unit == null");
+    return new Deadline(System.nanoTime() + unit.toNanos(duration));
+  }
+
+  /** Returns the deadline attached to the calling thread, or null if there is none. */
+  public static Deadline current() {
+    return CURRENT.get();
+  }
+
+  /** The deadline in {@link System#nanoTime()} terms. */
+  final long nanoTime;
+
+  private Deadline(long nanoTime) {
+    this.nanoTime = nanoTime;
+  }
+
+  /** Returns the time left before this deadline, or 0 if it has passed. */
+  public long timeRemaining(TimeUnit unit) {
+    long remaining = nanoTime - System.nanoTime();
+    return remaining > 0 ? unit.convert(remaining, TimeUnit.NANOSECONDS) : 0;
+  }
+
+  public boolean isExpired() {
+    return nanoTime - System.nanoTime() <= 0;
+  }
+
+  /** Returns whichever of this and {@code other} is sooner. A null {@code other} returns this. */
+  public Deadline minimum(Deadline other) {
+    if (other == null || nanoTime - other.nanoTime <= 0) {
+      return this;
+    }
+    return other;
+  }
+
+  /**
+   * Make this the calling thread's current deadline and return the one it replaces, which may be
+   * null. Pass the result to {@link #detach} to restore it.
+   */
+  public Deadline attach() {
+    Deadline previous = CURRENT.get();
+    CURRENT.set(this);
+    return previous;
+  }
+
+  /** Restore {@code previous} as the current deadline, undoing a call to {@link #attach}. */
+  public void detach(Deadline previous) {
+    if (CURRENT.get() != this) {
+      throw new IllegalStateException("Deadline is not attached to this thread.");
+    }
+    if (previous != null) {
+      CURRENT.set(previous);
+    } else {
+      CURRENT.remove();
+    }
+  }
+
+  @Override public String toString() {
+    return "Deadline in " + timeRemaining(TimeUnit.MILLISECONDS) + "ms";
+  }
+}
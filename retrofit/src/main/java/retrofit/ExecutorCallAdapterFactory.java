@@ -54,7 +54,11 @@ final class ExecutorCallAdapterFactory implements CallAdapter.Factory {
     }
 
     @Override public void enqueue(Callback<T> callback) {
-      delegate.enqueue(new ExecutorCallback<>(callbackExecutor, callback));
+      // Only a call made directly by a service method has a listener to report dispatch to.
+      CallListener listener = delegate instanceof OkHttpCall
+          ? ((OkHttpCall<T>) delegate).listener
+          : CallListener.NONE;
+      delegate.enqueue(new ExecutorCallback<>(callbackExecutor, callback, listener));
     }
 
     @Override public Response<T> execute() throws IOException {
@@ -74,23 +78,29 @@ final class ExecutorCallAdapterFactory implements CallAdapter.Factory {
   static final class ExecutorCallback<T> implements Callback<T> {
     private final Executor callbackExecutor;
     private final Callback<T> delegate;
+    private final CallListener listener;
 
-    ExecutorCallback(Executor callbackExecutor, Callback<T> delegate) {
+    ExecutorCallback(Executor callbackExecutor, Callback<T> delegate, CallListener listener) {
       this.callbackExecutor = callbackExecutor;
       this.delegate = delegate;
+      this.listener = listener;
     }
 
     @Override public void onResponse(final Response<T> response) {
+      listener.callbackDispatchStart();
       callbackExecutor.execute(new Runnable() {
         @Override public void run() {
+          listener.callbackDispatchEnd();
           delegate.onResponse(response);
         }
       });
     }
 
     @Override public void onFailure(final Throwable t) {
+      listener.callbackDispatchStart();
       callbackExecutor.execute(new Runnable() {
         @Override public void run() {
+          listener.callbackDispatchEnd();
           delegate.onFailure(t);
         }
       });
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.lang.reflect.Method;
+
+import static retrofit.Utils.checkNotNull;
+
+/**
+ * A service interface method bound to a {@link Retrofit} instance. This is used by service
+ * implementations generated at compile time by {@code retrofit-compiler} to invoke methods without
+ * a {@link java.lang.reflect.Proxy}.
+ * <p>
+ * Application code should not use this type directly.
+ */
+public final class MethodBinding {
+  private static final Object[] NO_ARGS = new Object[0];
+
+  /**
+   * Bind the method {@code name} with {@code parameterTypes} declared on {@code service} to
+   * {@code retrofit}.
+   */
+  public static MethodBinding bind(Retrofit retrofit, Class<?> service, String name,
+      Class<?>... parameterTypes) {
+    checkNotNull(retrofit, "retrofit == null");
+    checkNotNull(service, "service == null");
+    checkNotNull(name, "name == null");
+    Method method;
+    try {
+      method = service.getDeclaredMethod(name, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(
+          "Generated implementation does not match " + service.getName() + "." + name, e);
+    }
+    return new MethodBinding(retrofit, method);
+  }
+
+  private final Retrofit retrofit;
+  private final Method method;
+  private volatile MethodHandler<?> handler;
+
+  private MethodBinding(Retrofit retrofit, Method method) {
+    this.retrofit = retrofit;
+    this.method = method;
+  }
+
+  /** Invoke a method which has no parameters. */
+  public Object invoke() {
+    return invoke(NO_ARGS);
+  }
+
+  /** Invoke a method with {@code args} in declaration order. */
+  public Object invoke(Object... args) {
+    MethodHandler<?> handler = this.handler;
+    if (handler == null) {
+      // Racing threads will all receive the same instance from the cache.
+      handler = retrofit.loadMethodHandler(method);
+      this.handler = handler;
+    }
+    return handler.invoke(args);
+  }
+}
@@ -20,6 +20,7 @@ import com.squareup.okhttp.ResponseBody;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import okio.BufferedSource;
 
 final class MethodHandler<T> {
   @SuppressWarnings("unchecked")
@@ -29,7 +30,18 @@ final class MethodHandler<T> {
     Converter<ResponseBody, Object> responseConverter =
         (Converter<ResponseBody, Object>) createResponseConverter(method, retrofit, responseType);
     RequestFactory requestFactory = RequestFactoryParser.parse(method, responseType, retrofit);
-    return new MethodHandler<>(retrofit.client(), requestFactory, callAdapter, responseConverter);
+    // Raw bodies are single-use and can't be shared by coalesced calls.
+    RequestCoalescer coalescer =
+        responseType != ResponseBody.class && responseType != BufferedSource.class
+            ? retrofit.requestCoalescer()
+            : null;
+    OkHttpClient client = retrofit.client();
+    if (requestFactory.timeouts != null) {
+      client = requestFactory.timeouts.applyTo(client);
+    }
+    return new MethodHandler<>(method, client, requestFactory, callAdapter, responseConverter,
+        retrofit.responseCache(), coalescer, retrofit.maxErrorBodySize(),
+        retrofit.callListenerFactory());
   }
 
   private static CallAdapter<?> createCallAdapter(Method method, Retrofit retrofit) {
@@ -59,20 +71,34 @@ final class MethodHandler<T> {
     }
   }
 
+  private final Method method;
   private final OkHttpClient client;
   private final RequestFactory requestFactory;
   private final CallAdapter<T> callAdapter;
   private final Converter<ResponseBody, T> responseConverter;
+  private final ResponseCache responseCache;
+  private final RequestCoalescer coalescer;
+  private final long maxErrorBodySize;
+  private final CallListener.Factory listenerFactory;
 
-  private MethodHandler(OkHttpClient client, RequestFactory requestFactory,
-      CallAdapter<T> callAdapter, Converter<ResponseBody, T> responseConverter) {
+  private MethodHandler(Method method, OkHttpClient client, RequestFactory requestFactory,
+      CallAdapter<T> callAdapter, Converter<ResponseBody, T> responseConverter,
+      ResponseCache responseCache, RequestCoalescer coalescer, long maxErrorBodySize,
+      CallListener.Factory listenerFactory) {
+    this.method = method;
     this.client = client;
     this.requestFactory = requestFactory;
     this.callAdapter = callAdapter;
     this.responseConverter = responseConverter;
+    this.responseCache = responseCache;
+    this.coalescer = coalescer;
+    this.maxErrorBodySize = maxErrorBodySize;
+    this.listenerFactory = listenerFactory;
   }
 
   Object invoke(Object... args) {
-    return callAdapter.adapt(new OkHttpCall<>(client, requestFactory, responseConverter, args));
+    return callAdapter.adapt(
+        new OkHttpCall<>(client, requestFactory, responseConverter, args, responseCache,
+            coalescer, maxErrorBodySize, Deadline.current(), method, listenerFactory));
   }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.OkHttpClient;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import retrofit.http.Timeout;
+
+import static retrofit.Utils.methodError;
+
+/** Timeouts from a method's {@link Timeout} annotation. */
+final class MethodTimeouts {
+  static final long UNSET = -1;
+
+  static MethodTimeouts parse(Method method, Timeout timeout) {
+    long connect = timeout.connect();
+    long read = timeout.read();
+    long write = timeout.write();
+    long call = timeout.call();
+    if (connect < UNSET || read < UNSET || write < UNSET || call < UNSET) {
+      throw methodError(method, "@Timeout values must be -1 (unset) or greater.");
+    }
+    if (connect == UNSET && read == UNSET && write == UNSET && call == UNSET) {
+      throw methodError(method, "@Timeout annotation is empty.");
+    }
+    TimeUnit unit = timeout.unit();
+    return new MethodTimeouts(toMillis(connect, unit), toMillis(read, unit), toMillis(write, unit),
+        call != UNSET ? unit.toNanos(call) : 0);
+  }
+
+  private static long toMillis(long value, TimeUnit unit) {
+    return value != UNSET ? unit.toMillis(value) : UNSET;
+  }
+
+  /** Per-operation timeouts in milliseconds, or {@link #UNSET} to use the client's. */
+  final long connectMillis;
+  final long readMillis;
+  final long writeMillis;
+  /** The deadline for a whole call, or 0 for none. */
+  final long callNanos;
+
+  MethodTimeouts(long connectMillis, long readMillis, long writeMillis, long callNanos) {
+    this.connectMillis = connectMillis;
+    this.readMillis = readMillis;
+    this.writeMillis = writeMillis;
+    this.callNanos = callNanos;
+  }
+
+  /**
+   * Returns {@code client} with these per-operation timeouts. The copy shares the connection pool
+   * and dispatcher of {@code client}.
+   */
+  OkHttpClient applyTo(OkHttpClient client) {
+    if (connectMillis == UNSET && readMillis == UNSET && writeMillis == UNSET) {
+      return client;
+    }
+    OkHttpClient copy = client.clone();
+    if (connectMillis != UNSET) copy.setConnectTimeout(connectMillis, TimeUnit.MILLISECONDS);
+    if (readMillis != UNSET) copy.setReadTimeout(readMillis, TimeUnit.MILLISECONDS);
+    if (writeMillis != UNSET) copy.setWriteTimeout(writeMillis, TimeUnit.MILLISECONDS);
+    return copy;
+  }
+}
@@ -20,6 +20,11 @@ import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
 import com.squareup.okhttp.ResponseBody;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okio.AsyncTimeout;
 import okio.Buffer;
 import okio.BufferedSource;
 import okio.ForwardingSource;
@@ -32,33 +37,102 @@ final class OkHttpCall<T> implements Call<T> {
   private final RequestFactory requestFactory;
   private final Converter<ResponseBody, T> responseConverter;
   private final Object[] args;
+  private final ResponseCache responseCache; // Null if caching is disabled.
+  private final RequestCoalescer coalescer; // Null if calls are not coalesced.
+  private final long maxErrorBodySize;
+  private final Deadline deadline; // Null if none was attached when the call was created.
+  private final AsyncTimeout timeout; // Null if there is neither a call timeout nor a deadline.
+  private final Method method;
+  private final CallListener.Factory listenerFactory; // Null if calls are not observed.
+  final CallListener listener;
 
   private volatile com.squareup.okhttp.Call rawCall;
   private boolean executed; // Guarded by this.
   private volatile boolean canceled;
+  private ResponseCache.Exchange cacheExchange; // Set once before the raw call is created.
+  private volatile RequestCoalescer.Waiter<T> waiter; // Non-null if sharing a network call.
 
   OkHttpCall(OkHttpClient client, RequestFactory requestFactory,
-      Converter<ResponseBody, T> responseConverter, Object[] args) {
+      Converter<ResponseBody, T> responseConverter, Object[] args, ResponseCache responseCache,
+      RequestCoalescer coalescer, long maxErrorBodySize, Deadline deadline, Method method,
+      CallListener.Factory listenerFactory) {
     this.client = client;
     this.requestFactory = requestFactory;
     this.responseConverter = responseConverter;
     this.args = args;
+    this.responseCache = responseCache;
+    this.coalescer = coalescer;
+    this.maxErrorBodySize = maxErrorBodySize;
+    this.deadline = deadline;
+    this.method = method;
+    this.listenerFactory = listenerFactory;
+    this.listener = listenerFactory != null ? listenerFactory.create(method) : CallListener.NONE;
+
+    MethodTimeouts timeouts = requestFactory.timeouts;
+    long callNanos = timeouts != null ? timeouts.callNanos : 0;
+    if (callNanos != 0 || deadline != null) {
+      timeout = new AsyncTimeout() {
+        @Override protected void timedOut() {
+          cancelForTimeout();
+        }
+      };
+      // When both are set the watchdog honors whichever elapses first.
+      timeout.timeout(callNanos, TimeUnit.NANOSECONDS);
+      if (deadline != null) {
+        timeout.deadlineNanoTime(deadline.nanoTime);
+      }
+    } else {
+      timeout = null;
+    }
   }
 
   @SuppressWarnings("CloneDoesntCallSuperClone") // We are a final type & this saves clearing state.
   @Override public OkHttpCall<T> clone() {
-    return new OkHttpCall<>(client, requestFactory, responseConverter, args);
+    return new OkHttpCall<>(client, requestFactory, responseConverter, args, responseCache,
+        coalescer, maxErrorBodySize, deadline, method, listenerFactory);
   }
 
-  @Override public void enqueue(final Callback<T> callback) {
+  @Override public void enqueue(Callback<T> callback) {
     synchronized (this) {
       if (executed) throw new IllegalStateException("Already executed");
       executed = true;
     }
 
+    if (deadline != null && deadline.isExpired()) {
+      callback.onFailure(deadlineExceeded());
+      return;
+    }
+    if (timeout != null) {
+      callback = new TimeoutCallback<>(timeout, callback);
+      timeout.enter();
+    }
+    send(callback);
+  }
+
+  private void send(final Callback<T> callback) {
+    Request request;
+    try {
+      request = createRequest();
+    } catch (Throwable t) {
+      callback.onFailure(t);
+      return;
+    }
+    if (request == null) {
+      try {
+        callback.onResponse(responseCache.<T>cachedResponse(cacheExchange));
+      } catch (Throwable t) {
+        t.printStackTrace();
+      }
+      return;
+    }
+    if (isCoalesced(request)) {
+      join(request, callback);
+      return;
+    }
+
     com.squareup.okhttp.Call rawCall;
     try {
-      rawCall = createRawCall();
+      rawCall = client.newCall(request);
     } catch (Throwable t) {
       callback.onFailure(t);
       return;
@@ -68,6 +142,7 @@ final class OkHttpCall<T> implements Call<T> {
     }
     this.rawCall = rawCall;
 
+    listener.networkStart(request);
     rawCall.enqueue(new com.squareup.okhttp.Callback() {
       private void callFailure(Throwable e) {
         try {
@@ -86,10 +161,12 @@ final class OkHttpCall<T> implements Call<T> {
       }
 
       @Override public void onFailure(Request request, IOException e) {
+        listener.networkFailed(e);
         callFailure(e);
       }
 
       @Override public void onResponse(com.squareup.okhttp.Response rawResponse) {
+        listener.networkEnd(rawResponse);
         Response<T> response;
         try {
           response = parseResponse(rawResponse);
@@ -108,20 +185,80 @@ final class OkHttpCall<T> implements Call<T> {
       executed = true;
     }
 
-    com.squareup.okhttp.Call rawCall = createRawCall();
+    if (deadline != null && deadline.isExpired()) {
+      throw deadlineExceeded();
+    }
+    if (timeout == null) {
+      return send();
+    }
+    timeout.enter();
+    try {
+      return send();
+    } catch (IOException e) {
+      throw timeout.exit() ? timeoutException(e) : e;
+    } finally {
+      timeout.exit();
+    }
+  }
+
+  private Response<T> send() throws IOException {
+    Request request = createRequest();
+    if (request == null) {
+      return responseCache.cachedResponse(cacheExchange);
+    }
+    if (isCoalesced(request)) {
+      BlockingCallback<T> callback = new BlockingCallback<>();
+      join(request, callback);
+      return callback.await(this);
+    }
+
+    com.squareup.okhttp.Call rawCall = client.newCall(request);
     if (canceled) {
       rawCall.cancel();
     }
     this.rawCall = rawCall;
 
-    return parseResponse(rawCall.execute());
+    listener.networkStart(request);
+    com.squareup.okhttp.Response rawResponse;
+    try {
+      rawResponse = rawCall.execute();
+    } catch (IOException e) {
+      listener.networkFailed(e);
+      throw e;
+    }
+    listener.networkEnd(rawResponse);
+    return parseResponse(rawResponse);
   }
 
-  private com.squareup.okhttp.Call createRawCall() {
-    return client.newCall(requestFactory.create(args));
+  /**
+   * Returns the request to send to the server, or null if {@link #cacheExchange} has a fresh
+   * response which can be used instead.
+   */
+  private Request createRequest() {
+    listener.requestBuildStart();
+    Request request = requestFactory.create(args);
+    listener.requestBuildEnd(request);
+    if (responseCache == null) {
+      return request;
+    }
+    cacheExchange = responseCache.begin(responseConverter, request);
+    return cacheExchange != null ? cacheExchange.networkRequest : request;
   }
 
-  private Response<T> parseResponse(com.squareup.okhttp.Response rawResponse) throws IOException {
+  private boolean isCoalesced(Request request) {
+    return coalescer != null && "GET".equals(request.method());
+  }
+
+  private void join(Request request, Callback<T> callback) {
+    RequestCoalescer.Waiter<T> waiter =
+        coalescer.join(this, client, request, responseConverter, callback);
+    this.waiter = waiter;
+    if (canceled) {
+      coalescer.leave(waiter);
+    }
+  }
+
+  Response<T> parseResponse(com.squareup.okhttp.Response rawResponse) throws IOException {
     ResponseBody rawBody = rawResponse.body();
 
     // Remove the body's source (the only stateful object) so we can pass the response along.
@@ -130,11 +267,15 @@ final class OkHttpCall<T> implements Call<T> {
         .build();
 
     int code = rawResponse.code();
+    ResponseCache.Exchange cacheExchange = this.cacheExchange;
+    if (code == 304 && cacheExchange != null && cacheExchange.entry != null) {
+      closeQuietly(rawBody);
+      return responseCache.notModified(cacheExchange, rawResponse);
+    }
+
     if (code < 200 || code >= 300) {
       try {
-        // Buffer the entire body to avoid future I/O.
-        ResponseBody bufferedBody = Utils.readBodyToBytesIfNecessary(rawBody);
-        return Response.error(bufferedBody, rawResponse);
+        return bufferError(rawBody, rawResponse);
       } finally {
         closeQuietly(rawBody);
       }
@@ -146,8 +287,18 @@ final class OkHttpCall<T> implements Call<T> {
 
     ExceptionCatchingRequestBody catchingBody = new ExceptionCatchingRequestBody(rawBody);
     try {
-      T body = responseConverter.convert(catchingBody);
-      return Response.success(body, rawResponse);
+      T body;
+      listener.conversionStart();
+      try {
+        body = responseConverter.convert(catchingBody);
+      } finally {
+        listener.conversionEnd();
+      }
+      Response<T> response = Response.success(body, rawResponse);
+      if (cacheExchange != null) {
+        responseCache.store(cacheExchange, response, catchingBody.bytesRead);
+      }
+      return response;
     } catch (RuntimeException e) {
       // If the underlying source threw an exception, propagate that rather than indicating it was
       // a runtime exception.
@@ -156,12 +307,123 @@ final class OkHttpCall<T> implements Call<T> {
     }
   }
 
+  /**
+   * Buffer the error body to avoid future I/O. Bytes beyond {@link #maxErrorBodySize} are never
+   * read; closing the raw body discards them.
+   */
+  private Response<T> bufferError(ResponseBody rawBody, com.squareup.okhttp.Response rawResponse)
+      throws IOException {
+    if (maxErrorBodySize == Long.MAX_VALUE) {
+      return Response.error(Utils.readBodyToBytesIfNecessary(rawBody), rawResponse);
+    }
+
+    BufferedSource source = rawBody.source();
+    Buffer buffer = new Buffer();
+    if (source.request(maxErrorBodySize + 1)) {
+      buffer.write(source.buffer(), maxErrorBodySize);
+      ResponseBody truncatedBody =
+          ResponseBody.create(rawBody.contentType(), buffer.size(), buffer);
+      return Response.truncatedError(truncatedBody, rawResponse);
+    }
+    buffer.writeAll(source);
+    return Response.error(ResponseBody.create(rawBody.contentType(), buffer.size(), buffer),
+        rawResponse);
+  }
+
   public void cancel() {
     canceled = true;
     com.squareup.okhttp.Call rawCall = this.rawCall;
     if (rawCall != null) {
       rawCall.cancel();
     }
+    RequestCoalescer.Waiter<T> waiter = this.waiter;
+    if (waiter != null) {
+      coalescer.leave(waiter);
+    }
+  }
+
+  /**
+   * Cancel this call from Okio's watchdog thread, which is shared by every timeout in the process.
+   * The failure is delivered by the HTTP client's threads so that callbacks never run here.
+   */
+  private void cancelForTimeout() {
+    canceled = true;
+    com.squareup.okhttp.Call rawCall = this.rawCall;
+    if (rawCall != null) {
+      rawCall.cancel();
+    }
+    final RequestCoalescer.Waiter<T> waiter = this.waiter;
+    if (waiter != null) {
+      client.getDispatcher().getExecutorService().execute(new Runnable() {
+        @Override public void run() {
+          coalescer.leave(waiter);
+        }
+      });
+    }
+  }
+
+  static InterruptedIOException deadlineExceeded() {
+    return new InterruptedIOException("deadline exceeded");
+  }
+
+  static InterruptedIOException timeoutException(Throwable cause) {
+    InterruptedIOException e = new InterruptedIOException("timeout");
+    e.initCause(cause);
+    return e;
+  }
+
+  /** Stops the call timeout when the call completes, reporting failures after it as timeouts. */
+  static final class TimeoutCallback<T> implements Callback<T> {
+    private final AsyncTimeout timeout;
+    private final Callback<T> delegate;
+
+    TimeoutCallback(AsyncTimeout timeout, Callback<T> delegate) {
+      this.timeout = timeout;
+      this.delegate = delegate;
+    }
+
+    @Override public void onResponse(Response<T> response) {
+      timeout.exit();
+      delegate.onResponse(response);
+    }
+
+    @Override public void onFailure(Throwable t) {
+      delegate.onFailure(timeout.exit() ? timeoutException(t) : t);
+    }
+  }
+
+  /** Receives the outcome of a shared network call for {@link #execute()}. */
+  static final class BlockingCallback<T> implements Callback<T> {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private Response<T> response; // Published by latch.
+    private Throwable failure; // Published by latch.
+
+    @Override public void onResponse(Response<T> response) {
+      this.response = response;
+      latch.countDown();
+    }
+
+    @Override public void onFailure(Throwable t) {
+      this.failure = t;
+      latch.countDown();
+    }
+
+    Response<T> await(Call<T> call) throws IOException {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        call.cancel();
+        throw new InterruptedIOException();
+      }
+      Throwable failure = this.failure;
+      if (failure == null) {
+        return response;
+      }
+      if (failure instanceof IOException) throw (IOException) failure;
+      if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+      if (failure instanceof Error) throw (Error) failure;
+      throw new RuntimeException(failure);
+    }
   }
 
   static final class NoContentResponseBody extends ResponseBody {
@@ -189,6 +451,7 @@ final class OkHttpCall<T> implements Call<T> {
   static final class ExceptionCatchingRequestBody extends ResponseBody {
     private final ResponseBody delegate;
     private IOException thrownException;
+    long bytesRead;
 
     ExceptionCatchingRequestBody(ResponseBody delegate) {
       this.delegate = delegate;
@@ -218,7 +481,11 @@ final class OkHttpCall<T> implements Call<T> {
       return Okio.buffer(new ForwardingSource(delegateSource) {
         @Override public long read(Buffer sink, long byteCount) throws IOException {
           try {
-            return super.read(sink, byteCount);
+            long read = super.read(sink, byteCount);
+            if (read != -1) {
+              bytesRead += read;
+            }
+            return read;
           } catch (IOException e) {
             thrownException = e;
             throw e;
@@ -19,8 +19,11 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
 
 class Platform {
@@ -53,6 +56,27 @@ class Platform {
     return DefaultCallAdapter.FACTORY;
   }
 
+  /**
+   * Returns a factory for {@code CompletableFuture} return types, or null if this runtime does not
+   * have them.
+   */
+  CallAdapter.Factory completableFutureCallAdapterFactory() {
+    return null;
+  }
+
+  /**
+   * Returns an executor which runs each task on a new virtual thread, or null if this runtime does
+   * not support virtual threads.
+   */
+  ExecutorService virtualThreadExecutor() {
+    return null;
+  }
+
+  /** Returns true if the calling thread is a virtual thread. */
+  boolean isVirtualThread() {
+    return false;
+  }
+
   boolean isDefaultMethod(Method method) {
     return false;
   }
@@ -64,6 +88,43 @@ class Platform {
 
   @IgnoreJRERequirement // Only classloaded and used on Java 8.
   static class Java8 extends Platform {
+    /** {@code Thread.isVirtual()}, or null if this runtime does not have virtual threads. */
+    private final Method threadIsVirtual = threadIsVirtual();
+
+    @Override CallAdapter.Factory completableFutureCallAdapterFactory() {
+      return CompletableFutureCallAdapterFactory.INSTANCE;
+    }
+
+    @Override ExecutorService virtualThreadExecutor() {
+      // Virtual threads need Java 21, or Java 19 with preview features enabled. Look the factory
+      // up reflectively so this still runs on older runtimes.
+      try {
+        Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (ExecutorService) factory.invoke(null);
+      } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+        return null;
+      }
+    }
+
+    @Override boolean isVirtualThread() {
+      if (threadIsVirtual == null) {
+        return false;
+      }
+      try {
+        return (Boolean) threadIsVirtual.invoke(Thread.currentThread());
+      } catch (IllegalAccessException | InvocationTargetException e) {
+        return false;
+      }
+    }
+
+    private static Method threadIsVirtual() {
+      try {
+        return Thread.class.getMethod("isVirtual");
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
+    }
+
     @Override boolean isDefaultMethod(Method method) {
       return method.isDefault();
     }
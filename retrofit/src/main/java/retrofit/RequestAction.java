@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static retrofit.Utils.checkNotNull;
 
@@ -73,10 +75,12 @@ abstract class RequestAction<T> {
 
   static final class Path extends RequestAction<Object> {
     private final String name;
+    private final int slot;
     private final boolean encoded;
 
-    Path(String name, boolean encoded) {
+    Path(String name, int slot, boolean encoded) {
       this.name = checkNotNull(name, "name == null");
+      this.slot = slot;
       this.encoded = encoded;
     }
 
@@ -85,7 +89,7 @@ abstract class RequestAction<T> {
         throw new IllegalArgumentException(
             "Path parameter \"" + name + "\" value must not be null.");
       }
-      builder.addPathParam(name, value.toString(), encoded);
+      builder.addPathParam(slot, value.toString(), encoded);
     }
   }
 
@@ -188,9 +192,13 @@ abstract class RequestAction<T> {
   }
 
   static final class PartMap extends RequestAction<Map<?, ?>> {
+    /** Bounds the headers interned for maps whose keys are not a fixed set. */
+    static final int MAX_INTERNED_HEADERS = 64;
+
     private final Retrofit retrofit;
     private final String transferEncoding;
     private final Annotation[] annotations;
+    private final ConcurrentMap<String, Headers> internedHeaders = new ConcurrentHashMap<>();
 
     PartMap(Retrofit retrofit, String transferEncoding, Annotation[] annotations) {
       this.retrofit = retrofit;
@@ -211,9 +219,7 @@ abstract class RequestAction<T> {
           continue; // Skip null values.
         }
 
-        Headers headers = Headers.of(
-            "Content-Disposition", "form-data; name=\"" + entryKey + "\"",
-            "Content-Transfer-Encoding", transferEncoding);
+        Headers headers = headers(entryKey.toString());
 
         Class<?> entryClass = entryValue.getClass();
         Converter<Object, RequestBody> converter =
@@ -227,6 +233,20 @@ abstract class RequestAction<T> {
         builder.addPart(headers, body);
       }
     }
+
+    /** Returns the headers of the part {@code name}, reusing those built for earlier requests. */
+    Headers headers(String name) {
+      Headers headers = internedHeaders.get(name);
+      if (headers == null) {
+        headers = Headers.of(
+            "Content-Disposition", "form-data; name=\"" + name + "\"",
+            "Content-Transfer-Encoding", transferEncoding);
+        if (internedHeaders.size() < MAX_INTERNED_HEADERS) {
+          internedHeaders.putIfAbsent(name, headers);
+        }
+      }
+      return headers;
+    }
   }
 
   static final class Body<T> extends RequestAction<T> {
@@ -23,19 +23,31 @@ import com.squareup.okhttp.MultipartBuilder;
 import com.squareup.okhttp.Request;
 import com.squareup.okhttp.RequestBody;
 import java.io.IOException;
-import okio.Buffer;
 import okio.BufferedSink;
 
 final class RequestBuilder {
   private static final char[] HEX_DIGITS =
       { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
-  private static final String PATH_SEGMENT_ENCODE_SET = " \"<>^`{}|/\\?#";
+  /** ASCII characters which must be percent-encoded in a path segment, indexed by character. */
+  private static final boolean[] PATH_SEGMENT_ENCODE_SET = new boolean[0x80];
+  static {
+    for (int c = 0; c < 0x20; c++) {
+      PATH_SEGMENT_ENCODE_SET[c] = true;
+    }
+    PATH_SEGMENT_ENCODE_SET[0x7f] = true;
+    for (char c : " \"<>^`{}|/\\?#".toCharArray()) {
+      PATH_SEGMENT_ENCODE_SET[c] = true;
+    }
+  }
 
   private final String method;
 
-  private final HttpUrl baseUrl;
+  private final ResolvedUrl resolvedUrl;
+  private final String[] pathValues;
   private String relativeUrl;
   private HttpUrl.Builder urlBuilder;
+  /** Output of percent-encoding, shared by this request's path values. Lazily allocated. */
+  private char[] scratch;
 
   private final Request.Builder requestBuilder;
   private MediaType contentType;
@@ -45,11 +57,18 @@ final class RequestBuilder {
   private FormEncodingBuilder formEncodingBuilder;
   private RequestBody body;
 
-  RequestBuilder(String method, HttpUrl baseUrl, String relativeUrl, Headers headers,
-      MediaType contentType, boolean hasBody, boolean isFormEncoded, boolean isMultipart) {
+  /**
+   * @param resolvedUrl the base URL and the relative URL from the method annotation. The relative
+   * URL is null if it will be supplied by {@link #setRelativeUrl}.
+   */
+  RequestBuilder(String method, ResolvedUrl resolvedUrl, Headers headers, MediaType contentType,
+      boolean hasBody, boolean isFormEncoded, boolean isMultipart) {
     this.method = method;
-    this.baseUrl = baseUrl;
-    this.relativeUrl = relativeUrl;
+    this.resolvedUrl = resolvedUrl;
+    UrlTemplate urlTemplate = resolvedUrl.urlTemplate;
+    this.pathValues = urlTemplate != null && urlTemplate.slotCount() > 0
+        ? new String[urlTemplate.slotCount()]
+        : null;
     this.requestBuilder = new Request.Builder();
     this.contentType = contentType;
     this.hasBody = hasBody;
@@ -80,26 +99,19 @@ final class RequestBuilder {
     }
   }
 
-  void addPathParam(String name, String value, boolean encoded) {
-    if (relativeUrl == null) {
-      // The relative URL is cleared when the first query parameter is set.
+  void addPathParam(int slot, String value, boolean encoded) {
+    if (urlBuilder != null) {
+      // The URL is resolved when the first query parameter is set.
       throw new AssertionError();
     }
-    relativeUrl = relativeUrl.replace("{" + name + "}", canonicalize(value, encoded));
+    pathValues[slot] = canonicalize(value, encoded);
   }
 
-  static String canonicalize(String input, boolean alreadyEncoded) {
-    int codePoint;
-    for (int i = 0, limit = input.length(); i < limit; i += Character.charCount(codePoint)) {
-      codePoint = input.codePointAt(i);
-      if (codePoint < 0x20 || codePoint >= 0x7f
-          || PATH_SEGMENT_ENCODE_SET.indexOf(codePoint) != -1
-          || (codePoint == '%' && !alreadyEncoded)) {
+  String canonicalize(String input, boolean alreadyEncoded) {
+    for (int i = 0, limit = input.length(); i < limit; i++) {
+      if (mustEncode(input.charAt(i), alreadyEncoded)) {
         // Slow path: the character at i requires encoding!
-        Buffer out = new Buffer();
-        out.writeUtf8(input, 0, i);
-        canonicalize(out, input, i, limit, alreadyEncoded);
-        return out.readUtf8();
+        return canonicalize(input, i, alreadyEncoded);
       }
     }
 
@@ -107,41 +119,68 @@ final class RequestBuilder {
     return input;
   }
 
-  static void canonicalize(Buffer out, String input, int pos, int limit, boolean alreadyEncoded) {
-    Buffer utf8Buffer = null; // Lazily allocated.
+  private String canonicalize(String input, int pos, boolean alreadyEncoded) {
+    int limit = input.length();
+    // A char encodes to at most 9 chars: a three byte UTF-8 sequence, each byte as %XX.
+    int capacity = pos + (limit - pos) * 9;
+    char[] out = scratch;
+    if (out == null || out.length < capacity) {
+      out = scratch = new char[capacity];
+    }
+    input.getChars(0, pos, out, 0);
+    int length = pos;
+
     int codePoint;
     for (int i = pos; i < limit; i += Character.charCount(codePoint)) {
       codePoint = input.codePointAt(i);
       if (alreadyEncoded
           && (codePoint == '\t' || codePoint == '\n' || codePoint == '\f' || codePoint == '\r')) {
         // Skip this character.
-      } else if (codePoint < 0x20
-          || codePoint >= 0x7f
-          || PATH_SEGMENT_ENCODE_SET.indexOf(codePoint) != -1
-          || (codePoint == '%' && !alreadyEncoded)) {
-        // Percent encode this character.
-        if (utf8Buffer == null) {
-          utf8Buffer = new Buffer();
-        }
-        utf8Buffer.writeUtf8CodePoint(codePoint);
-        while (!utf8Buffer.exhausted()) {
-          int b = utf8Buffer.readByte() & 0xff;
-          out.writeByte('%');
-          out.writeByte(HEX_DIGITS[(b >> 4) & 0xf]);
-          out.writeByte(HEX_DIGITS[b & 0xf]);
+      } else if (codePoint < 0x80) {
+        if (mustEncode(codePoint, alreadyEncoded)) {
+          length = percentEncode(out, length, codePoint);
+        } else {
+          // This character doesn't need encoding. Just copy it over.
+          out[length++] = (char) codePoint;
         }
+      } else if (codePoint < 0x800) {
+        length = percentEncode(out, length, 0xc0 | codePoint >> 6);
+        length = percentEncode(out, length, 0x80 | codePoint & 0x3f);
+      } else if (codePoint >= 0xd800 && codePoint <= 0xdfff) {
+        // Unpaired surrogate. Encode a replacement character like String.getBytes() would.
+        length = percentEncode(out, length, '?');
+      } else if (codePoint < 0x10000) {
+        length = percentEncode(out, length, 0xe0 | codePoint >> 12);
+        length = percentEncode(out, length, 0x80 | codePoint >> 6 & 0x3f);
+        length = percentEncode(out, length, 0x80 | codePoint & 0x3f);
       } else {
-        // This character doesn't need encoding. Just copy it over.
-        out.writeUtf8CodePoint(codePoint);
+        length = percentEncode(out, length, 0xf0 | codePoint >> 18);
+        length = percentEncode(out, length, 0x80 | codePoint >> 12 & 0x3f);
+        length = percentEncode(out, length, 0x80 | codePoint >> 6 & 0x3f);
+        length = percentEncode(out, length, 0x80 | codePoint & 0x3f);
       }
     }
+    return new String(out, 0, length);
+  }
+
+  private static boolean mustEncode(int c, boolean alreadyEncoded) {
+    return c >= 0x80 || PATH_SEGMENT_ENCODE_SET[c] || (c == '%' && !alreadyEncoded);
+  }
+
+  /** Writes {@code b} as {@code %XX} into {@code out} at {@code pos}, returning the new end. */
+  private static int percentEncode(char[] out, int pos, int b) {
+    out[pos] = '%';
+    out[pos + 1] = HEX_DIGITS[(b >> 4) & 0xf];
+    out[pos + 2] = HEX_DIGITS[b & 0xf];
+    return pos + 3;
   }
 
   void addQueryParam(String name, String value, boolean encoded) {
-    if (relativeUrl != null) {
+    if (urlBuilder == null) {
       // Do a one-time combination of the built relative URL and the base URL.
-      urlBuilder = baseUrl.resolve(relativeUrl).newBuilder();
-      relativeUrl = null;
+      urlBuilder = resolvedUrl.urlTemplate != null
+          ? resolvedUrl.newBuilder(pathValues)
+          : resolvedUrl.baseUrl.resolve(relativeUrl).newBuilder();
     }
 
     if (encoded) {
@@ -174,7 +213,9 @@ final class RequestBuilder {
       url = urlBuilder.build();
     } else {
       // No query parameters triggered builder creation, just combine the relative URL and base URL.
-      url = baseUrl.resolve(relativeUrl);
+      url = resolvedUrl.urlTemplate != null
+          ? resolvedUrl.url(pathValues)
+          : resolvedUrl.baseUrl.resolve(relativeUrl);
     }
 
     RequestBody body = this.body;
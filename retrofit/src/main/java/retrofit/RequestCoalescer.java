@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.ResponseBody;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares one network call and one converted body among identical {@code GET} calls which are in
+ * flight at the same time.
+ * <p>
+ * Every call waiting on a shared network call is a {@link Waiter}. Canceling a waiter fails only
+ * that waiter. The network call itself is canceled once no waiters remain.
+ */
+final class RequestCoalescer {
+  private final Map<RequestKey, Flight<?>> flights = new HashMap<>(); // Guarded by this.
+
+  /**
+   * Attach {@code callback} to the network call in flight for {@code request}, starting one whose
+   * response is parsed by {@code leader} if there is none.
+   */
+  @SuppressWarnings("unchecked") // Keys include the converter, so the body type matches.
+  <T> Waiter<T> join(OkHttpCall<T> leader, OkHttpClient client, Request request,
+      Object converter, Callback<T> callback) {
+    RequestKey key = new RequestKey(converter, request);
+    Flight<T> flight;
+    boolean start = false;
+    synchronized (this) {
+      flight = (Flight<T>) flights.get(key);
+      if (flight == null) {
+        flight = new Flight<>(key, leader, client.newCall(request));
+        flights.put(key, flight);
+        start = true;
+      }
+      flight.callbacks.add(callback);
+    }
+    if (start) {
+      flight.rawCall.enqueue(flight);
+    }
+    return new Waiter<>(flight, callback);
+  }
+
+  /**
+   * Detach {@code waiter} from its network call, failing it with an {@link IOException}. The
+   * network call is canceled if this was its last waiter.
+   */
+  void leave(Waiter<?> waiter) {
+    Flight<?> flight = waiter.flight;
+    boolean cancel;
+    synchronized (this) {
+      if (!flight.callbacks.remove(waiter.callback)) {
+        return; // Already completed or left.
+      }
+      cancel = flight.callbacks.isEmpty();
+      if (cancel) {
+        flights.remove(flight.key);
+      }
+    }
+    if (cancel) {
+      flight.rawCall.cancel();
+    }
+    waiter.callback.onFailure(new IOException("Canceled"));
+  }
+
+  /** Returns the callbacks waiting on {@code flight} and stops new calls from joining it. */
+  private synchronized <T> List<Callback<T>> finish(Flight<T> flight) {
+    if (flights.get(flight.key) == flight) {
+      flights.remove(flight.key);
+    }
+    List<Callback<T>> callbacks = new ArrayList<>(flight.callbacks);
+    flight.callbacks.clear();
+    return callbacks;
+  }
+
+  /** A call's membership in a shared network call. */
+  static final class Waiter<T> {
+    final Flight<T> flight;
+    final Callback<T> callback;
+
+    Waiter(Flight<T> flight, Callback<T> callback) {
+      this.flight = flight;
+      this.callback = callback;
+    }
+  }
+
+  private final class Flight<T> implements com.squareup.okhttp.Callback {
+    final RequestKey key;
+    final OkHttpCall<T> leader;
+    final com.squareup.okhttp.Call rawCall;
+    final List<Callback<T>> callbacks = new ArrayList<>(); // Guarded by RequestCoalescer.this.
+
+    Flight(RequestKey key, OkHttpCall<T> leader, com.squareup.okhttp.Call rawCall) {
+      this.key = key;
+      this.leader = leader;
+      this.rawCall = rawCall;
+    }
+
+    @Override public void onFailure(Request request, IOException e) {
+      onFailure(e);
+    }
+
+    @Override public void onResponse(com.squareup.okhttp.Response rawResponse) {
+      Response<T> response;
+      try {
+        response = leader.parseResponse(rawResponse);
+      } catch (Throwable t) {
+        onFailure(t);
+        return;
+      }
+
+      List<Callback<T>> callbacks = finish(this);
+      if (response.isSuccess()) {
+        for (Callback<T> callback : callbacks) {
+          callSuccess(callback, response);
+        }
+        return;
+      }
+
+      // Error bodies are single-use. Give each waiter its own copy.
+      ResponseBody errorBody = response.errorBody();
+      byte[] errorBytes;
+      try {
+        errorBytes = errorBody.bytes();
+      } catch (Throwable t) {
+        for (Callback<T> callback : callbacks) {
+          callFailure(callback, t);
+        }
+        return;
+      }
+      for (Callback<T> callback : callbacks) {
+        ResponseBody copy = ResponseBody.create(errorBody.contentType(), errorBytes);
+        callSuccess(callback, response.isErrorBodyTruncated()
+            ? Response.<T>truncatedError(copy, response.raw())
+            : Response.<T>error(copy, response.raw()));
+      }
+    }
+
+    private void onFailure(Throwable t) {
+      for (Callback<T> callback : finish(this)) {
+        callFailure(callback, t);
+      }
+    }
+  }
+
+  private static <T> void callSuccess(Callback<T> callback, Response<T> response) {
+    try {
+      callback.onResponse(response);
+    } catch (Throwable t) {
+      callFailure(callback, t);
+    }
+  }
+
+  private static void callFailure(Callback<?> callback, Throwable t) {
+    try {
+      callback.onFailure(t);
+    } catch (Throwable ignored) {
+      // The waiter's own callback failed. There is nobody left to report it to.
+    }
+  }
+}
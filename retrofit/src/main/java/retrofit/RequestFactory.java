@@ -16,38 +16,43 @@
 package retrofit;
 
 import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.HttpUrl;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.Request;
 
 final class RequestFactory {
   private final String method;
   private final BaseUrl baseUrl;
-  private final String relativeUrl;
+  private final UrlTemplate urlTemplate;
   private final Headers headers;
   private final MediaType contentType;
   private final boolean hasBody;
   private final boolean isFormEncoded;
   private final boolean isMultipart;
   private final RequestAction[] requestActions;
+  final MethodTimeouts timeouts; // Null if the method has no @Timeout.
+  /** The relative URL resolved against the most recently seen base URL. */
+  private volatile ResolvedUrl resolvedUrl;
 
-  RequestFactory(String method, BaseUrl baseUrl, String relativeUrl, Headers headers,
+  RequestFactory(String method, BaseUrl baseUrl, UrlTemplate urlTemplate, Headers headers,
       MediaType contentType, boolean hasBody, boolean isFormEncoded, boolean isMultipart,
-      RequestAction[] requestActions) {
+      RequestAction[] requestActions, MethodTimeouts timeouts) {
     this.method = method;
     this.baseUrl = baseUrl;
-    this.relativeUrl = relativeUrl;
+    this.urlTemplate = urlTemplate;
     this.headers = headers;
     this.contentType = contentType;
     this.hasBody = hasBody;
     this.isFormEncoded = isFormEncoded;
     this.isMultipart = isMultipart;
     this.requestActions = requestActions;
+    this.timeouts = timeouts;
   }
 
   Request create(Object... args) {
     RequestBuilder requestBuilder =
-        new RequestBuilder(method, baseUrl.url(), relativeUrl, headers, contentType, hasBody,
-            isFormEncoded, isMultipart);
+        new RequestBuilder(method, resolvedUrl(), headers, contentType, hasBody, isFormEncoded,
+            isMultipart);
 
     if (args != null) {
       RequestAction[] actions = requestActions;
@@ -65,4 +70,18 @@ final class RequestFactory {
 
     return requestBuilder.build();
   }
+
+  /**
+   * Returns the relative URL resolved against the current base URL. This is only recomputed when a
+   * dynamic {@link BaseUrl} returns a different URL.
+   */
+  private ResolvedUrl resolvedUrl() {
+    HttpUrl url = baseUrl.url();
+    ResolvedUrl resolvedUrl = this.resolvedUrl;
+    if (resolvedUrl == null || (resolvedUrl.baseUrl != url && !resolvedUrl.baseUrl.equals(url))) {
+      resolvedUrl = new ResolvedUrl(url, urlTemplate);
+      this.resolvedUrl = resolvedUrl;
+    }
+    return resolvedUrl;
+  }
 }
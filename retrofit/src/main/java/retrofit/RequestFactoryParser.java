@@ -45,6 +45,7 @@ import retrofit.http.PartMap;
 import retrofit.http.Path;
 import retrofit.http.Query;
 import retrofit.http.QueryMap;
+import retrofit.http.Timeout;
 import retrofit.http.Url;
 
 import static retrofit.Utils.methodError;
@@ -53,7 +54,7 @@ final class RequestFactoryParser {
   // Upper and lower characters, digits, underscores, and hyphens, starting with a character.
   private static final String PARAM = "[a-zA-Z][a-zA-Z0-9_-]*";
   private static final Pattern PARAM_NAME_REGEX = Pattern.compile(PARAM);
-  private static final Pattern PARAM_URL_REGEX = Pattern.compile("\\{(" + PARAM + ")\\}");
+  static final Pattern PARAM_URL_REGEX = Pattern.compile("\\{(" + PARAM + ")\\}");
 
   static RequestFactory parse(Method method, Type responseType, Retrofit retrofit) {
     RequestFactoryParser parser = new RequestFactoryParser(method);
@@ -69,9 +70,11 @@ final class RequestFactoryParser {
   private boolean isFormEncoded;
   private boolean isMultipart;
   private String relativeUrl;
+  private UrlTemplate urlTemplate;
   private com.squareup.okhttp.Headers headers;
   private MediaType contentType;
   private RequestAction[] requestActions;
+  private MethodTimeouts timeouts;
 
   private Set<String> relativeUrlParamNames;
 
@@ -80,8 +83,8 @@ final class RequestFactoryParser {
   }
 
   private RequestFactory toRequestFactory(BaseUrl baseUrl) {
-    return new RequestFactory(httpMethod, baseUrl, relativeUrl, headers, contentType, hasBody,
-        isFormEncoded, isMultipart, requestActions);
+    return new RequestFactory(httpMethod, baseUrl, urlTemplate, headers, contentType, hasBody,
+        isFormEncoded, isMultipart, requestActions, timeouts);
   }
 
   private RuntimeException parameterError(Throwable cause, int index, String message,
@@ -131,6 +134,8 @@ final class RequestFactoryParser {
           throw methodError(method, "Only one encoding annotation is allowed.");
         }
         isFormEncoded = true;
+      } else if (annotation instanceof Timeout) {
+        timeouts = MethodTimeouts.parse(method, (Timeout) annotation);
       }
     }
 
@@ -176,6 +181,7 @@ final class RequestFactoryParser {
 
     this.relativeUrl = value;
     this.relativeUrlParamNames = parsePathParameters(value);
+    this.urlTemplate = UrlTemplate.parse(value);
   }
 
   private com.squareup.okhttp.Headers parseHeaders(String[] headers) {
@@ -251,7 +257,7 @@ final class RequestFactoryParser {
             Path path = (Path) methodParameterAnnotation;
             String name = path.value();
             validatePathName(i, name);
-            action = new RequestAction.Path(name, path.encoded());
+            action = new RequestAction.Path(name, urlTemplate.slotOf(name), path.encoded());
 
           } else if (methodParameterAnnotation instanceof Query) {
             Query query = (Query) methodParameterAnnotation;
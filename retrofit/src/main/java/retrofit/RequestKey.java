@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.Request;
+
+/**
+ * Identifies requests which produce interchangeable responses: the same URL and headers, converted
+ * by the same service method's response converter.
+ */
+final class RequestKey {
+  final Object converter;
+  final String url;
+  final String headers;
+
+  RequestKey(Object converter, Request request) {
+    this.converter = converter;
+    this.url = request.urlString();
+    this.headers = request.headers().toString();
+  }
+
+  @Override public boolean equals(Object other) {
+    if (!(other instanceof RequestKey)) return false;
+    RequestKey that = (RequestKey) other;
+    return converter == that.converter && url.equals(that.url) && headers.equals(that.headers);
+  }
+
+  @Override public int hashCode() {
+    int result = System.identityHashCode(converter);
+    result = 31 * result + url.hashCode();
+    result = 31 * result + headers.hashCode();
+    return result;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.HttpUrl;
+
+/**
+ * A {@link UrlTemplate} resolved against one value of the base URL. The parts of the URL which do
+ * not depend on a request's path values are computed once so that building each request's URL
+ * does not re-parse the base URL.
+ */
+final class ResolvedUrl {
+  final HttpUrl baseUrl;
+  final UrlTemplate urlTemplate;
+  /** The complete URL when the template has no placeholders. */
+  private final HttpUrl staticUrl;
+  /** The base URL without its query and fragment, to which an absolute path can be applied. */
+  private final HttpUrl pathBaseUrl;
+  /** The path of the base URL up to and including its last '/'. */
+  private final String baseDirectory;
+
+  /** @param urlTemplate null if the relative URL is supplied with each request. */
+  ResolvedUrl(HttpUrl baseUrl, UrlTemplate urlTemplate) {
+    this.baseUrl = baseUrl;
+    this.urlTemplate = urlTemplate;
+
+    if (urlTemplate == null) {
+      staticUrl = null;
+      pathBaseUrl = null;
+      baseDirectory = null;
+    } else if (urlTemplate.slotCount() == 0) {
+      staticUrl = baseUrl.resolve(urlTemplate.toString());
+      pathBaseUrl = null;
+      baseDirectory = null;
+    } else {
+      staticUrl = null;
+      pathBaseUrl = baseUrl.newBuilder().encodedQuery(null).fragment(null).build();
+      String basePath = baseUrl.encodedPath();
+      baseDirectory = basePath.substring(0, basePath.lastIndexOf('/') + 1);
+    }
+  }
+
+  /** Returns the URL of the template with {@code pathValues} substituted. */
+  HttpUrl url(String[] pathValues) {
+    if (urlTemplate.slotCount() == 0) {
+      return staticUrl;
+    }
+    String relativeUrl = urlTemplate.expand(pathValues);
+    if (isPath(relativeUrl)) {
+      return pathBuilder(relativeUrl).build();
+    }
+    return baseUrl.resolve(relativeUrl);
+  }
+
+  /** Returns a builder for the template with {@code pathValues} substituted. */
+  HttpUrl.Builder newBuilder(String[] pathValues) {
+    if (urlTemplate.slotCount() == 0) {
+      return staticUrl.newBuilder();
+    }
+    String relativeUrl = urlTemplate.expand(pathValues);
+    if (isPath(relativeUrl)) {
+      return pathBuilder(relativeUrl);
+    }
+    return baseUrl.resolve(relativeUrl).newBuilder();
+  }
+
+  private HttpUrl.Builder pathBuilder(String relativePath) {
+    String path = relativePath.charAt(0) == '/' ? relativePath : baseDirectory + relativePath;
+    return pathBaseUrl.newBuilder().encodedPath(path);
+  }
+
+  /**
+   * True if resolving {@code relativeUrl} against the base URL would only replace its path.
+   * Anything else, like a scheme, authority, query, or surrounding whitespace, needs full
+   * resolution.
+   */
+  private static boolean isPath(String relativeUrl) {
+    int length = relativeUrl.length();
+    if (length == 0 || relativeUrl.charAt(0) == ' ' || relativeUrl.charAt(length - 1) == ' ') {
+      return false;
+    }
+    if (relativeUrl.startsWith("//")) {
+      return false; // Authority.
+    }
+    boolean slashSeen = false;
+    for (int i = 0; i < length; i++) {
+      char c = relativeUrl.charAt(i);
+      if (c < ' ' || c == '?' || c == '#' || c == '\\') {
+        return false;
+      } else if (c == '/') {
+        slashSeen = true;
+      } else if (c == ':' && !slashSeen) {
+        return false; // Scheme.
+      }
+    }
+    return true;
+  }
+}
@@ -40,7 +40,7 @@ public final class Response<T> {
     if (!rawResponse.isSuccessful()) {
       throw new IllegalArgumentException("rawResponse must be successful response");
     }
-    return new Response<>(rawResponse, body, null);
+    return new Response<>(rawResponse, body, null, false);
   }
 
   /**
@@ -63,17 +63,26 @@ public final class Response<T> {
     if (rawResponse.isSuccessful()) {
       throw new IllegalArgumentException("rawResponse should not be successful response");
     }
-    return new Response<>(rawResponse, null, body);
+    return new Response<>(rawResponse, null, body, false);
+  }
+
+  /** Create an error response whose {@code body} holds only the start of the server's body. */
+  static <T> Response<T> truncatedError(ResponseBody body,
+      com.squareup.okhttp.Response rawResponse) {
+    return new Response<>(rawResponse, null, body, true);
   }
 
   private final com.squareup.okhttp.Response rawResponse;
   private final T body;
   private final ResponseBody errorBody;
+  private final boolean errorBodyTruncated;
 
-  private Response(com.squareup.okhttp.Response rawResponse, T body, ResponseBody errorBody) {
+  private Response(com.squareup.okhttp.Response rawResponse, T body, ResponseBody errorBody,
+      boolean errorBodyTruncated) {
     this.rawResponse = rawResponse;
     this.body = body;
     this.errorBody = errorBody;
+    this.errorBodyTruncated = errorBodyTruncated;
   }
 
   /** The raw response from the HTTP client. */
@@ -106,8 +115,19 @@ public final class Response<T> {
     return body;
   }
 
-  /** The raw response body of an {@linkplain #isSuccess() unsuccessful} response. */
+  /**
+   * The raw response body of an {@linkplain #isSuccess() unsuccessful} response. This holds only
+   * the start of the server's body if it was {@linkplain #isErrorBodyTruncated() truncated}.
+   */
   public ResponseBody errorBody() {
     return errorBody;
   }
+
+  /**
+   * True if the server's error body was larger than the
+   * {@linkplain Retrofit.Builder#maxErrorBodySize maximum size} and the rest of it was discarded.
+   */
+  public boolean isErrorBodyTruncated() {
+    return errorBodyTruncated;
+  }
 }
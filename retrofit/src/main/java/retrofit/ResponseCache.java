@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.CacheControl;
+import com.squareup.okhttp.Headers;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.ResponseBody;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okio.Source;
+
+/**
+ * An in-memory cache of <em>converted</em> response bodies. Unlike OkHttp's cache, which stores
+ * raw bytes, a hit on this cache skips the response converter entirely.
+ * <p>
+ * Only successful responses to {@code GET} requests are stored, and only when their
+ * {@code Cache-Control} header allows it and they are either fresh for some time or carry a
+ * validator ({@code ETag} or {@code Last-Modified}). A response is fresh for its {@code max-age},
+ * or without one, from its {@code Date} until its {@code Expires}, less its {@code Age}. Raw
+ * {@link ResponseBody} and {@link Source} bodies are never stored. A fresh entry is returned
+ * without contacting the server. A stale entry with a validator is revalidated with a conditional
+ * request, and a {@code 304 Not Modified} response returns the cached body. Requests with any other
+ * method evict the entries for their URL.
+ * <p>
+ * Entries are keyed on the service method and the complete request, including its headers. Least
+ * recently used entries are evicted when either the entry count or the total estimated size
+ * exceeds its maximum. The estimated size of an entry is the number of response body bytes which
+ * were converted to produce it.
+ * <p>
+ * <strong>Cached bodies are shared by every call which hits their entry.</strong> Only use this
+ * cache with response types which are immutable or never modified once returned.
+ *
+ * @see Retrofit.Builder#responseCache(ResponseCache)
+ */
+public final class ResponseCache {
+  /**
+   * Create a cache which holds at most {@code maxEntries} responses whose estimated size totals at
+   * most {@code maxSize} bytes.
+   */
+  public static ResponseCache create(int maxEntries, long maxSize) {
+    if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries <= 0: " + maxEntries);
+    if (maxSize <= 0) throw new IllegalArgumentException("maxSize <= 0: " + maxSize);
+    return new ResponseCache(maxEntries, maxSize);
+  }
+
+  private final int maxEntries;
+  private final long maxSize;
+  /** Entries in access order, least recently used first. Guarded by this. */
+  private final LinkedHashMap<RequestKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long size; // Guarded by this.
+  private int hitCount; // Guarded by this.
+  private int conditionalHitCount; // Guarded by this.
+  private int missCount; // Guarded by this.
+
+  private ResponseCache(int maxEntries, long maxSize) {
+    this.maxEntries = maxEntries;
+    this.maxSize = maxSize;
+  }
+
+  /** The number of responses currently stored. */
+  public synchronized int entryCount() {
+    return entries.size();
+  }
+
+  /** The total estimated size in bytes of the responses currently stored. */
+  public synchronized long size() {
+    return size;
+  }
+
+  public int maxEntries() {
+    return maxEntries;
+  }
+
+  public long maxSize() {
+    return maxSize;
+  }
+
+  /** The number of calls which were served from the cache without contacting the server. */
+  public synchronized int hitCount() {
+    return hitCount;
+  }
+
+  /** The number of calls whose cached response was confirmed by a {@code 304} from the server. */
+  public synchronized int conditionalHitCount() {
+    return conditionalHitCount;
+  }
+
+  /** The number of cacheable calls for which no usable response was stored. */
+  public synchronized int missCount() {
+    return missCount;
+  }
+
+  /** Remove all stored responses. */
+  public synchronized void evictAll() {
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Begin a call for {@code request} whose responses are converted by {@code converter}. Returns
+   * null if the request cannot use the cache.
+   */
+  synchronized Exchange begin(Object converter, Request request) {
+    if (!"GET".equals(request.method())) {
+      invalidate(request.urlString());
+      return null;
+    }
+    CacheControl requestCaching = request.cacheControl();
+    if (requestCaching.noStore()) {
+      return null;
+    }
+
+    RequestKey key = new RequestKey(converter, request);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      missCount++;
+      return new Exchange(key, null, request);
+    }
+    if (!requestCaching.noCache() && entry.isFresh(System.currentTimeMillis())) {
+      hitCount++;
+      return new Exchange(key, entry, null);
+    }
+    if (entry.etag == null && entry.lastModified == null) {
+      missCount++;
+      return new Exchange(key, null, request);
+    }
+
+    Request.Builder conditionalRequest = request.newBuilder();
+    if (entry.etag != null) {
+      conditionalRequest.header("If-None-Match", entry.etag);
+    }
+    if (entry.lastModified != null) {
+      conditionalRequest.header("If-Modified-Since", entry.lastModified);
+    }
+    return new Exchange(key, entry, conditionalRequest.build());
+  }
+
+  /** Returns the cached response of an exchange which needs no network request. */
+  @SuppressWarnings("unchecked") // Keys include the converter, so the body type matches.
+  <T> Response<T> cachedResponse(Exchange exchange) {
+    return Response.success((T) exchange.entry.body, exchange.entry.rawResponse);
+  }
+
+  /**
+   * Handle a {@code 304 Not Modified} response to the conditional request of {@code exchange},
+   * returning the cached body with headers updated from {@code rawResponse}.
+   */
+  @SuppressWarnings("unchecked") // Keys include the converter, so the body type matches.
+  <T> Response<T> notModified(Exchange exchange, com.squareup.okhttp.Response rawResponse) {
+    Entry cached = exchange.entry;
+    com.squareup.okhttp.Response updatedResponse = cached.rawResponse.newBuilder()
+        .request(rawResponse.request())
+        .headers(combine(cached.rawResponse.headers(), rawResponse.headers()))
+        .build();
+    Entry entry = new Entry(cached.body, updatedResponse, System.currentTimeMillis(), cached.size);
+    synchronized (this) {
+      conditionalHitCount++;
+      put(exchange.key, entry);
+    }
+    return Response.success((T) cached.body, updatedResponse);
+  }
+
+  /** Store the successful {@code response} of {@code exchange}, if its headers allow it. */
+  void store(Exchange exchange, Response<?> response, long byteCount) {
+    com.squareup.okhttp.Response rawResponse = response.raw();
+    if (rawResponse.code() != 200 || response.body() instanceof ResponseBody
+        || response.body() instanceof Source) {
+      return; // Raw bodies are single-use and can't be shared.
+    }
+    CacheControl responseCaching = rawResponse.cacheControl();
+    if (responseCaching.noStore() || "*".equals(rawResponse.header("Vary"))) {
+      return;
+    }
+    Entry entry = new Entry(response.body(), rawResponse, System.currentTimeMillis(), byteCount);
+    if (entry.freshMillis <= 0 && entry.etag == null && entry.lastModified == null) {
+      return; // Never fresh and can't be revalidated.
+    }
+    synchronized (this) {
+      put(exchange.key, entry);
+    }
+  }
+
+  private void put(RequestKey key, Entry entry) {
+    if (entry.size > maxSize) {
+      Entry previous = entries.remove(key);
+      if (previous != null) {
+        size -= previous.size;
+      }
+      return;
+    }
+    Entry previous = entries.put(key, entry);
+    if (previous != null) {
+      size -= previous.size;
+    }
+    size += entry.size;
+    trimToSize();
+  }
+
+  private void trimToSize() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while ((entries.size() > maxEntries || size > maxSize) && iterator.hasNext()) {
+      size -= iterator.next().size;
+      iterator.remove();
+    }
+  }
+
+  private void invalidate(String url) {
+    for (Iterator<Map.Entry<RequestKey, Entry>> i = entries.entrySet().iterator(); i.hasNext(); ) {
+      Map.Entry<RequestKey, Entry> entry = i.next();
+      if (entry.getKey().url.equals(url)) {
+        size -= entry.getValue().size;
+        i.remove();
+      }
+    }
+  }
+
+  /** Headers of a stored response updated with those of a {@code 304} response. */
+  private static Headers combine(Headers cachedHeaders, Headers networkHeaders) {
+    Headers.Builder result = new Headers.Builder();
+    for (int i = 0, size = cachedHeaders.size(); i < size; i++) {
+      String name = cachedHeaders.name(i);
+      if (networkHeaders.get(name) == null || isContentHeader(name)) {
+        result.add(name, cachedHeaders.value(i));
+      }
+    }
+    for (int i = 0, size = networkHeaders.size(); i < size; i++) {
+      String name = networkHeaders.name(i);
+      if (!isContentHeader(name)) {
+        result.add(name, networkHeaders.value(i));
+      }
+    }
+    return result.build();
+  }
+
+  private static boolean isContentHeader(String name) {
+    return "Content-Length".equalsIgnoreCase(name)
+        || "Content-Encoding".equalsIgnoreCase(name)
+        || "Content-Type".equalsIgnoreCase(name);
+  }
+
+  /** One call's use of the cache. */
+  static final class Exchange {
+    final RequestKey key;
+    /** The stored response, or null if there is none which can be used. */
+    final Entry entry;
+    /** The request to send, or null if {@link #entry} is fresh. */
+    final Request networkRequest;
+
+    Exchange(RequestKey key, Entry entry, Request networkRequest) {
+      this.key = key;
+      this.entry = entry;
+      this.networkRequest = networkRequest;
+    }
+  }
+
+  static final class Entry {
+    final Object body;
+    final com.squareup.okhttp.Response rawResponse;
+    final long receivedAtMillis;
+    final long size;
+    /** How long after being received this entry may be used without revalidation. */
+    final long freshMillis;
+    final String etag;
+    final String lastModified;
+
+    Entry(Object body, com.squareup.okhttp.Response rawResponse, long receivedAtMillis,
+        long size) {
+      this.body = body;
+      this.rawResponse = rawResponse;
+      this.receivedAtMillis = receivedAtMillis;
+      this.size = size;
+      this.etag = rawResponse.header("ETag");
+      this.lastModified = rawResponse.header("Last-Modified");
+
+      CacheControl caching = rawResponse.cacheControl();
+      long lifetimeMillis = lifetimeMillis(rawResponse, caching, receivedAtMillis);
+      if (caching.noCache() || lifetimeMillis <= 0) {
+        freshMillis = 0;
+      } else {
+        long ageSeconds = 0;
+        String age = rawResponse.header("Age");
+        if (age != null) {
+          try {
+            ageSeconds = Math.max(0, Long.parseLong(age.trim()));
+          } catch (NumberFormatException ignored) {
+          }
+        }
+        freshMillis = lifetimeMillis - ageSeconds * 1000L;
+      }
+    }
+
+    /**
+     * Returns how long the response is fresh for from when the server sent it: its {@code max-age},
+     * or else the time from its {@code Date}, or its receipt, until its {@code Expires}.
+     */
+    private static long lifetimeMillis(com.squareup.okhttp.Response rawResponse,
+        CacheControl caching, long receivedAtMillis) {
+      if (caching.maxAgeSeconds() != -1) {
+        return caching.maxAgeSeconds() * 1000L;
+      }
+      Headers headers = rawResponse.headers();
+      Date expires = headers.getDate("Expires");
+      if (expires == null) {
+        return 0; // Absent, or an invalid date which means already expired.
+      }
+      Date served = headers.getDate("Date");
+      return expires.getTime() - (served != null ? served.getTime() : receivedAtMillis);
+    }
+
+    boolean isFresh(long nowMillis) {
+      return nowMillis - receivedAtMillis < freshMillis;
+    }
+  }
+}
@@ -15,21 +15,26 @@
  */
 package retrofit;
 
+import com.squareup.okhttp.Dispatcher;
 import com.squareup.okhttp.HttpUrl;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.ResponseBody;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import retrofit.http.GET;
 import retrofit.http.HTTP;
 import retrofit.http.Header;
@@ -90,33 +95,70 @@ import static retrofit.Utils.checkNotNull;
  * @author Jake Wharton (jw@squareup.com)
  */
 public final class Retrofit {
-  private final Map<Method, MethodHandler<?>> methodHandlerCache = new LinkedHashMap<>();
+  /** Suffix of the binary name of service implementations generated by retrofit-compiler. */
+  static final String GENERATED_SUFFIX = "$$RetrofitImpl";
+  /** The most converters remembered in each direction when lookups are cached. */
+  static final int MAX_CACHED_CONVERTERS = 256;
+
+  private final Map<Method, MethodHandler<?>> methodHandlerCache = new ConcurrentHashMap<>();
+  // Services which have no generated implementation, so later calls to create skip the lookup.
+  private final Set<Class<?>> servicesWithoutGenerated =
+      Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+  // Null unless converter lookups are cached.
+  private final ConcurrentMap<ConverterKey, Converter<?, RequestBody>> requestConverterCache;
+  private final ConcurrentMap<ConverterKey, Converter<ResponseBody, ?>> responseConverterCache;
 
   private final OkHttpClient client;
   private final BaseUrl baseUrl;
   private final List<Converter.Factory> converterFactories;
   private final List<CallAdapter.Factory> adapterFactories;
   private final Executor callbackExecutor;
+  private final ResponseCache responseCache;
+  private final RequestCoalescer requestCoalescer;
+  private final long maxErrorBodySize;
+  private final CallListener.Factory callListenerFactory;
   private final boolean validateEagerly;
 
   private Retrofit(OkHttpClient client, BaseUrl baseUrl, List<Converter.Factory> converterFactories,
       List<CallAdapter.Factory> adapterFactories, Executor callbackExecutor,
+      ResponseCache responseCache, RequestCoalescer requestCoalescer, long maxErrorBodySize,
+      CallListener.Factory callListenerFactory, boolean cacheConverters,
       boolean validateEagerly) {
     this.client = client;
     this.baseUrl = baseUrl;
     this.converterFactories = converterFactories;
     this.adapterFactories = adapterFactories;
     this.callbackExecutor = callbackExecutor;
+    this.responseCache = responseCache;
+    this.requestCoalescer = requestCoalescer;
+    this.maxErrorBodySize = maxErrorBodySize;
+    this.callListenerFactory = callListenerFactory;
     this.validateEagerly = validateEagerly;
+    if (cacheConverters) {
+      requestConverterCache = new ConcurrentHashMap<>();
+      responseConverterCache = new ConcurrentHashMap<>();
+    } else {
+      requestConverterCache = null;
+      responseConverterCache = null;
+    }
   }
 
-  /** Create an implementation of the API defined by the {@code service} interface. */
+  /**
+   * Create an implementation of the API defined by the {@code service} interface.
+   * <p>
+   * If {@code retrofit-compiler} generated an implementation of {@code service} at compile time it
+   * will be used. Otherwise a {@link Proxy} is created which dispatches methods reflectively.
+   */
   @SuppressWarnings("unchecked") // Single-interface proxy creation guarded by parameter safety.
   public <T> T create(final Class<T> service) {
     Utils.validateServiceInterface(service);
     if (validateEagerly) {
       eagerlyValidateMethods(service);
     }
+    T generated = createGenerated(service);
+    if (generated != null) {
+      return generated;
+    }
     return (T) Proxy.newProxyInstance(service.getClassLoader(), new Class<?>[] { service },
         new InvocationHandler() {
           private final Platform platform = Platform.get();
@@ -135,6 +177,40 @@ public final class Retrofit {
         });
   }
 
+  /**
+   * Returns an instance of the implementation of {@code service} generated by
+   * {@code retrofit-compiler}, or null if there is none.
+   */
+  private <T> T createGenerated(Class<T> service) {
+    if (servicesWithoutGenerated.contains(service)) {
+      return null;
+    }
+    Class<?> generatedClass;
+    try {
+      generatedClass = Class.forName(service.getName() + GENERATED_SUFFIX, true,
+          service.getClassLoader());
+    } catch (ClassNotFoundException ignored) {
+      servicesWithoutGenerated.add(service);
+      return null;
+    }
+    try {
+      return service.cast(generatedClass.getConstructor(Retrofit.class).newInstance(this));
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(
+          "Unable to create generated implementation of " + service.getName(), cause);
+    } catch (NoSuchMethodException | InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException(
+          "Unable to create generated implementation of " + service.getName(), e);
+    }
+  }
+
   private void eagerlyValidateMethods(Class<?> service) {
     Platform platform = Platform.get();
     for (Method method : service.getDeclaredMethods()) {
@@ -145,14 +221,25 @@ public final class Retrofit {
   }
 
   MethodHandler<?> loadMethodHandler(Method method) {
-    MethodHandler<?> handler;
+    // Cache hits are lock-free. Only a miss synchronizes so that each handler is created once.
+    MethodHandler<?> handler = methodHandlerCache.get(method);
+    if (handler != null) {
+      return handler;
+    }
+
+    long createNanos = -1L;
     synchronized (methodHandlerCache) {
       handler = methodHandlerCache.get(method);
       if (handler == null) {
+        long startNanos = System.nanoTime();
         handler = MethodHandler.create(this, method);
+        createNanos = System.nanoTime() - startNanos;
         methodHandlerCache.put(method, handler);
       }
     }
+    if (createNanos != -1L && callListenerFactory != null) {
+      callListenerFactory.methodHandlerCreated(method, createNanos);
+    }
     return handler;
   }
 
@@ -217,16 +304,30 @@ public final class Retrofit {
 
   /**
    * Returns a {@link Converter} for {@code type} to {@link RequestBody} from the available
-   * {@linkplain #converterFactories() factories}.
+   * {@linkplain #converterFactories() factories}. If {@linkplain Builder#cacheConverters
+   * enabled}, the converter is remembered and shared by later lookups with equal arguments.
    */
   public <T> Converter<T, RequestBody> requestConverter(Type type, Annotation[] annotations) {
     checkNotNull(type, "type == null");
     checkNotNull(annotations, "annotations == null");
 
+    ConverterKey key = null;
+    if (requestConverterCache != null) {
+      key = new ConverterKey(type, annotations);
+      Converter<?, RequestBody> cached = requestConverterCache.get(key);
+      if (cached != null) {
+        //noinspection unchecked
+        return (Converter<T, RequestBody>) cached;
+      }
+    }
+
     for (int i = 0, count = converterFactories.size(); i < count; i++) {
       Converter<?, RequestBody> converter =
           converterFactories.get(i).toRequestBody(type, annotations);
       if (converter != null) {
+        if (key != null && requestConverterCache.size() < MAX_CACHED_CONVERTERS) {
+          requestConverterCache.putIfAbsent(key.copy(), converter);
+        }
         //noinspection unchecked
         return (Converter<T, RequestBody>) converter;
       }
@@ -243,16 +344,30 @@ public final class Retrofit {
 
   /**
    * Returns a {@link Converter} for {@link ResponseBody} to {@code type} from the available
-   * {@linkplain #converterFactories() factories}.
+   * {@linkplain #converterFactories() factories}. If {@linkplain Builder#cacheConverters
+   * enabled}, the converter is remembered and shared by later lookups with equal arguments.
    */
   public <T> Converter<ResponseBody, T> responseConverter(Type type, Annotation[] annotations) {
     checkNotNull(type, "type == null");
     checkNotNull(annotations, "annotations == null");
 
+    ConverterKey key = null;
+    if (responseConverterCache != null) {
+      key = new ConverterKey(type, annotations);
+      Converter<ResponseBody, ?> cached = responseConverterCache.get(key);
+      if (cached != null) {
+        //noinspection unchecked
+        return (Converter<ResponseBody, T>) cached;
+      }
+    }
+
     for (int i = 0, count = converterFactories.size(); i < count; i++) {
       Converter<ResponseBody, ?> converter =
           converterFactories.get(i).fromResponseBody(type, annotations);
       if (converter != null) {
+        if (key != null && responseConverterCache.size() < MAX_CACHED_CONVERTERS) {
+          responseConverterCache.putIfAbsent(key.copy(), converter);
+        }
         //noinspection unchecked
         return (Converter<ResponseBody, T>) converter;
       }
@@ -271,6 +386,26 @@ public final class Retrofit {
     return callbackExecutor;
   }
 
+  /** The cache of converted response bodies, or null if none is used. */
+  public ResponseCache responseCache() {
+    return responseCache;
+  }
+
+  /** Null unless identical in-flight requests are coalesced. */
+  RequestCoalescer requestCoalescer() {
+    return requestCoalescer;
+  }
+
+  /** The maximum number of bytes of an error body which are buffered. */
+  public long maxErrorBodySize() {
+    return maxErrorBodySize;
+  }
+
+  /** The factory of listeners which observe each call, or null if calls are not observed. */
+  public CallListener.Factory callListenerFactory() {
+    return callListenerFactory;
+  }
+
   /**
    * Build a new {@link Retrofit}.
    * <p>
@@ -283,6 +418,13 @@ public final class Retrofit {
     private List<Converter.Factory> converterFactories = new ArrayList<>();
     private List<CallAdapter.Factory> adapterFactories = new ArrayList<>();
     private Executor callbackExecutor;
+    private long responseBodyBufferLimit = Long.MAX_VALUE;
+    private long maxErrorBodySize = Long.MAX_VALUE;
+    private ResponseCache responseCache;
+    private boolean coalesceRequests;
+    private CallListener.Factory callListenerFactory;
+    private boolean cacheConverters;
+    private boolean useVirtualThreads;
     private boolean validateEagerly;
 
     public Builder() {
@@ -400,13 +542,108 @@ public final class Retrofit {
 
     /**
      * The executor on which {@link Callback} methods are invoked when returning {@link Call} from
-     * your service method.
+     * your service method. Methods returning {@code CompletableFuture} complete on the HTTP
+     * client's thread and do not use this executor.
      */
     public Builder callbackExecutor(Executor callbackExecutor) {
       this.callbackExecutor = checkNotNull(callbackExecutor, "callbackExecutor == null");
       return this;
     }
 
+    /**
+     * Buffer the bodies of methods which return {@link ResponseBody} only when they are no larger
+     * than {@code byteCount}. Larger bodies are returned unread, as if the method were annotated
+     * {@link retrofit.http.Streaming @Streaming}, and the caller must close them. A body whose
+     * length is not known up front is read until it exceeds {@code byteCount}; those bytes are kept
+     * in front of the rest of the stream. By default every body is buffered.
+     * <p>
+     * To take ownership of a body without any buffering, declare the method's response type as
+     * {@link okio.BufferedSource}.
+     */
+    public Builder responseBodyBufferLimit(long byteCount) {
+      if (byteCount < 0) throw new IllegalArgumentException("byteCount < 0: " + byteCount);
+      this.responseBodyBufferLimit = byteCount;
+      return this;
+    }
+
+    /**
+     * Buffer at most {@code byteCount} bytes of the body of each unsuccessful response. The rest of
+     * a larger body is never read; its {@linkplain Response#errorBody() error body} holds only
+     * the first {@code byteCount} bytes and {@link Response#isErrorBodyTruncated()} returns true.
+     * By default error bodies are buffered in full.
+     */
+    public Builder maxErrorBodySize(long byteCount) {
+      if (byteCount < 0) throw new IllegalArgumentException("byteCount < 0: " + byteCount);
+      this.maxErrorBodySize = byteCount;
+      return this;
+    }
+
+    /**
+     * Cache converted response bodies in {@code responseCache}, so that a hit skips both the
+     * network and the response converter. By default no responses are cached.
+     */
+    public Builder responseCache(ResponseCache responseCache) {
+      this.responseCache = checkNotNull(responseCache, "responseCache == null");
+      return this;
+    }
+
+    /**
+     * When {@code true}, the converter found for a type and set of annotations is reused by later
+     * lookups with an equal type and annotations instead of asking each
+     * {@linkplain #addConverterFactory factory} again. This matters most for
+     * {@link retrofit.http.PartMap @PartMap} parameters, whose converters are looked up for each
+     * entry of every request.
+     * <p>
+     * A cached converter is shared by every call which uses it, so only enable this if each of
+     * your factories returns converters which are stateless and safe to use concurrently. At most
+     * 256 converters are remembered in each direction; lookups beyond that ask the factories
+     * every time. Defaults to {@code false}.
+     */
+    public Builder cacheConverters(boolean cacheConverters) {
+      this.cacheConverters = cacheConverters;
+      return this;
+    }
+
+    /**
+     * When {@code true}, identical {@code GET} calls which are in flight at the same time share one
+     * network call and one converted body. Calls are identical when they are made to the same
+     * service method with the same URL and headers. Canceling one of the calls does not affect
+     * the others; the network call is canceled only once every call sharing it is canceled.
+     * <p>
+     * Because the converted body is shared, only enable this for response types which are
+     * immutable or never modified once returned. Methods returning a raw {@link ResponseBody} are
+     * never coalesced.
+     */
+    public Builder coalesceRequests(boolean coalesceRequests) {
+      this.coalesceRequests = coalesceRequests;
+      return this;
+    }
+
+    /**
+     * Observe the phases of every call with a listener from {@code callListenerFactory}. Use this
+     * to measure where the time of slow calls is spent. By default calls are not observed.
+     */
+    public Builder callListenerFactory(CallListener.Factory callListenerFactory) {
+      this.callListenerFactory =
+          checkNotNull(callListenerFactory, "callListenerFactory == null");
+      return this;
+    }
+
+    /**
+     * When {@code true} and the runtime supports virtual threads, asynchronous calls run their
+     * blocking network round trip on a new virtual thread each instead of on OkHttp's pool of
+     * platform threads. Callbacks without a {@linkplain #callbackExecutor callback executor} are
+     * also invoked on that virtual thread. The dispatcher's limits on concurrent requests still
+     * apply.
+     * <p>
+     * The {@linkplain #client client} is cloned and given a new dispatcher; the instance passed to
+     * this builder is not modified. On runtimes without virtual threads this has no effect.
+     */
+    public Builder useVirtualThreads(boolean useVirtualThreads) {
+      this.useVirtualThreads = useVirtualThreads;
+      return this;
+    }
+
     /**
      * When calling {@link #create} on the resulting {@link Retrofit} instance, eagerly validate
      * the configuration of all methods in the supplied interface.
@@ -422,19 +659,41 @@ public final class Retrofit {
         throw new IllegalStateException("Base URL required.");
       }
 
+      Platform platform = Platform.get();
+
       OkHttpClient client = this.client;
       if (client == null) {
         client = new OkHttpClient();
       }
+      if (useVirtualThreads) {
+        ExecutorService virtualThreadExecutor = platform.virtualThreadExecutor();
+        if (virtualThreadExecutor != null) {
+          Dispatcher current = client.getDispatcher();
+          Dispatcher dispatcher = new Dispatcher(virtualThreadExecutor);
+          dispatcher.setMaxRequests(current.getMaxRequests());
+          dispatcher.setMaxRequestsPerHost(current.getMaxRequestsPerHost());
+          client = client.clone().setDispatcher(dispatcher);
+        }
+      }
 
-      // Make a defensive copy of the adapters and add the default Call adapter.
+      // Make a defensive copy of the adapters and add the platform's default adapters.
       List<CallAdapter.Factory> adapterFactories = new ArrayList<>(this.adapterFactories);
-      adapterFactories.add(Platform.get().defaultCallAdapterFactory(callbackExecutor));
+      CallAdapter.Factory futureAdapterFactory = platform.completableFutureCallAdapterFactory();
+      if (futureAdapterFactory != null) {
+        adapterFactories.add(futureAdapterFactory);
+      }
+      adapterFactories.add(platform.defaultCallAdapterFactory(callbackExecutor));
 
-      // Make a defensive copy of the converters.
+      // Make a defensive copy of the converters. The built-in converters are always first.
       List<Converter.Factory> converterFactories = new ArrayList<>(this.converterFactories);
+      if (responseBodyBufferLimit != Long.MAX_VALUE) {
+        converterFactories.set(0, new BuiltInConverters(responseBodyBufferLimit));
+      }
+
+      RequestCoalescer requestCoalescer = coalesceRequests ? new RequestCoalescer() : null;
 
       return new Retrofit(client, baseUrl, converterFactories, adapterFactories, callbackExecutor,
+          responseCache, requestCoalescer, maxErrorBodySize, callListenerFactory, cacheConverters,
           validateEagerly);
     }
   }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * A relative URL from a method annotation whose {@code {name}} placeholders were located once when
+ * the method was parsed. Each distinct name is assigned a slot. Expansion copies literal text and
+ * slot values in a single pass.
+ */
+final class UrlTemplate {
+  static UrlTemplate parse(String relativeUrl) {
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    List<Integer> slots = new ArrayList<>();
+
+    Matcher m = RequestFactoryParser.PARAM_URL_REGEX.matcher(relativeUrl);
+    int literalStart = 0;
+    while (m.find()) {
+      literals.add(relativeUrl.substring(literalStart, m.start()));
+      String name = m.group(1);
+      int slot = names.indexOf(name);
+      if (slot == -1) {
+        slot = names.size();
+        names.add(name);
+      }
+      slots.add(slot);
+      literalStart = m.end();
+    }
+    literals.add(relativeUrl.substring(literalStart));
+
+    int[] slotArray = new int[slots.size()];
+    for (int i = 0; i < slotArray.length; i++) {
+      slotArray[i] = slots.get(i);
+    }
+    return new UrlTemplate(relativeUrl, literals.toArray(new String[literals.size()]), slotArray,
+        names.toArray(new String[names.size()]));
+  }
+
+  private final String relativeUrl;
+  /** Literal text around each placeholder. There is always one more literal than placeholder. */
+  private final String[] literals;
+  /** The slot of each placeholder, in the order they appear. */
+  private final int[] slots;
+  /** The name of each slot. */
+  private final String[] names;
+  private final int literalLength;
+
+  private UrlTemplate(String relativeUrl, String[] literals, int[] slots, String[] names) {
+    this.relativeUrl = relativeUrl;
+    this.literals = literals;
+    this.slots = slots;
+    this.names = names;
+
+    int literalLength = 0;
+    for (String literal : literals) {
+      literalLength += literal.length();
+    }
+    this.literalLength = literalLength;
+  }
+
+  /** The number of distinct placeholder names. */
+  int slotCount() {
+    return names.length;
+  }
+
+  /** Returns the slot for the placeholder {@code name}, or -1 if it does not appear. */
+  int slotOf(String name) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Replace each placeholder with its already-encoded value from {@code values}, indexed by slot.
+   * Placeholders whose value is null are left in place.
+   */
+  String expand(String[] values) {
+    if (slots.length == 0) {
+      return relativeUrl;
+    }
+
+    int length = literalLength;
+    for (String value : values) {
+      if (value != null) {
+        length += value.length();
+      }
+    }
+    StringBuilder out = new StringBuilder(length);
+    out.append(literals[0]);
+    for (int i = 0; i < slots.length; i++) {
+      int slot = slots[i];
+      String value = values[slot];
+      if (value != null) {
+        out.append(value);
+      } else {
+        out.append('{').append(names[slot]).append('}');
+      }
+      out.append(literals[i + 1]);
+    }
+    return out.toString();
+  }
+
+  @Override public String toString() {
+    return relativeUrl;
+  }
+}
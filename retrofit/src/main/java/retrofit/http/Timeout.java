@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit.http;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Override timeouts for a single method. Values of -1 use the {@code OkHttpClient}'s timeouts and
+ * a value of 0 means no timeout.
+ * <pre>
+ * &#64;Timeout(read = 500, call = 2000)
+ * &#64;GET("/users/{id}")
+ * Call&lt;User&gt; user(@Path("id") String id);
+ * </pre>
+ * Connect, read, and write timeouts use a copy of the client which shares its connection pool and
+ * dispatcher. The {@linkplain #call() call timeout} is a deadline for the whole call, including
+ * time spent waiting for the dispatcher. When it elapses the call is canceled and fails with an
+ * {@link java.io.InterruptedIOException InterruptedIOException}.
+ */
+@Documented
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Timeout {
+  /** Timeout for establishing a connection. */
+  long connect() default -1;
+
+  /** Timeout for each read from the connection. */
+  long read() default -1;
+
+  /** Timeout for each write to the connection. */
+  long write() default -1;
+
+  /** Deadline for the entire call. There is none by default. */
+  long call() default -1;
+
+  /** The unit of every value in this annotation. */
+  TimeUnit unit() default TimeUnit.MILLISECONDS;
+}
@@ -0,0 +1,7 @@
+# Retrofit.create looks up the service implementations generated by retrofit-compiler by name and
+# instantiates them reflectively. Keep each one, its constructor, and the name of its interface.
+-if class **$$RetrofitImpl
+-keepnames interface <1>
+-keep class **$$RetrofitImpl {
+    public <init>(retrofit.Retrofit);
+}
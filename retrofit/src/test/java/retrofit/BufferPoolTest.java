@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import okio.ByteString;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public final class BufferPoolTest {
+  @Test public void writerEncodesUtf8() throws IOException {
+    BufferPool.Lease lease = BufferPool.acquire();
+    try {
+      lease.writer().write("héllo 🍩");
+      assertThat(lease.readByteString()).isEqualTo(ByteString.encodeUtf8("héllo 🍩"));
+      assertThat(lease.buffer().size()).isEqualTo(0);
+    } finally {
+      lease.release();
+    }
+  }
+
+  @Test public void leaseIsReusedOnTheSameThread() throws IOException {
+    BufferPool.Lease first = BufferPool.acquire();
+    Writer writer = first.writer();
+    writer.write("a");
+    first.readByteString();
+    first.release();
+
+    BufferPool.Lease second = BufferPool.acquire();
+    try {
+      assertThat(second).isSameAs(first);
+      assertThat(second.writer()).isSameAs(writer);
+    } finally {
+      second.release();
+    }
+  }
+
+  @Test public void nestedLeaseIsNotShared() {
+    BufferPool.Lease outer = BufferPool.acquire();
+    try {
+      BufferPool.Lease inner = BufferPool.acquire();
+      assertThat(inner).isNotSameAs(outer);
+      inner.release();
+      assertThat(BufferPool.acquire()).isNotSameAs(outer);
+    } finally {
+      outer.release();
+    }
+  }
+
+  @Test public void leaseIsEmptyAfterFailedSerialization() throws IOException {
+    BufferPool.Lease failed = BufferPool.acquire();
+    Writer writer = failed.writer();
+    writer.write("partial");
+    writer.flush();
+    failed.release();
+
+    BufferPool.Lease next = BufferPool.acquire();
+    try {
+      assertThat(next.buffer().size()).isEqualTo(0);
+      assertThat(next.writer()).isNotSameAs(writer);
+    } finally {
+      next.release();
+    }
+  }
+
+  @Test public void threadsHaveSeparateLeases() throws InterruptedException {
+    final BufferPool.Lease lease = BufferPool.acquire();
+    try {
+      final AtomicReference<BufferPool.Lease> otherRef = new AtomicReference<>();
+      Thread thread = new Thread() {
+        @Override public void run() {
+          BufferPool.Lease other = BufferPool.acquire();
+          otherRef.set(other);
+          other.release();
+        }
+      };
+      thread.start();
+      thread.join();
+      assertThat(otherRef.get()).isNotSameAs(lease);
+    } finally {
+      lease.release();
+    }
+  }
+
+  @Test public void leasesAreNotPooledOnVirtualThreads()
+      throws ExecutionException, InterruptedException {
+    ExecutorService executor = Platform.get().virtualThreadExecutor();
+    if (executor == null) {
+      return; // This runtime does not support virtual threads.
+    }
+    try {
+      Future<Boolean> reused = executor.submit(new Callable<Boolean>() {
+        @Override public Boolean call() {
+          BufferPool.Lease first = BufferPool.acquire();
+          first.release();
+          BufferPool.Lease second = BufferPool.acquire();
+          second.release();
+          return first == second;
+        }
+      });
+      assertThat(reused.get()).isFalse();
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
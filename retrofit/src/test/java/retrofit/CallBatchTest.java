@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import retrofit.http.GET;
+import retrofit.http.Path;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class CallBatchTest {
+  @Rule public final MockWebServer server = new MockWebServer();
+
+  interface Service {
+    @GET("/{path}") Call<String> get(@Path("path") String path);
+  }
+
+  /** Holds requests for {@code /hold} until released. */
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final AtomicInteger received = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private Service service;
+
+  @Before public void setUp() {
+    server.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        received.incrementAndGet();
+        int current = inFlight.incrementAndGet();
+        try {
+          while (true) {
+            int max = maxInFlight.get();
+            if (current <= max || maxInFlight.compareAndSet(max, current)) break;
+          }
+          String path = request.getPath().substring(1);
+          if (path.equals("hold")) {
+            release.await();
+          } else if (path.equals("missing")) {
+            return new MockResponse().setResponseCode(404);
+          } else {
+            // Later calls respond sooner so completion order differs from call order.
+            Thread.sleep(100 - 10 * Integer.parseInt(path));
+          }
+          return new MockResponse().setBody(path);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      }
+    });
+
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    service = retrofit.create(Service.class);
+  }
+
+  /** Calls for {@code paths}, where {@code "fail"} fails without making a request. */
+  private List<Call<String>> calls(String... paths) {
+    List<Call<String>> calls = new ArrayList<>();
+    for (String path : paths) {
+      calls.add(path.equals("fail") ? new FailingCall() : service.get(path));
+    }
+    return calls;
+  }
+
+  static final class FailingCall implements Call<String> {
+    @Override public Response<String> execute() throws IOException {
+      throw new IOException("failed");
+    }
+
+    @Override public void enqueue(Callback<String> callback) {
+      callback.onFailure(new IOException("failed"));
+    }
+
+    @Override public void cancel() {
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone") // Stateless.
+    @Override public Call<String> clone() {
+      return this;
+    }
+  }
+
+  @Test public void responsesInCallOrder() throws IOException {
+    CallBatch batch = new CallBatch.Builder().build();
+
+    List<Response<String>> responses = batch.execute(calls("0", "1", "2", "3", "4"));
+    List<String> bodies = new ArrayList<>();
+    for (Response<String> response : responses) {
+      bodies.add(response.body());
+    }
+    assertThat(bodies).containsExactly("0", "1", "2", "3", "4");
+  }
+
+  @Test public void emptyBatch() throws IOException {
+    CallBatch batch = new CallBatch.Builder().build();
+
+    assertThat(batch.execute(Collections.<Call<String>>emptyList())).isEmpty();
+  }
+
+  @Test public void httpErrorIsNotFailure() throws IOException {
+    CallBatch batch = new CallBatch.Builder().cancelOnFailure(true).build();
+
+    List<Response<String>> responses = batch.execute(calls("0", "missing"));
+    assertThat(responses.get(0).body()).isEqualTo("0");
+    assertThat(responses.get(1).code()).isEqualTo(404);
+  }
+
+  @Test public void maxConcurrencyLimitsCallsInFlight() throws IOException {
+    CallBatch batch = new CallBatch.Builder().maxConcurrency(2).build();
+
+    List<Response<String>> responses = batch.execute(calls("0", "1", "2", "3", "4", "5"));
+    assertThat(responses).hasSize(6);
+    assertThat(received.get()).isEqualTo(6);
+    assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+  }
+
+  @Test public void timeoutCancelsCallsAndStartsNoMore() throws IOException {
+    CallBatch batch = new CallBatch.Builder()
+        .maxConcurrency(1)
+        .timeout(200, MILLISECONDS)
+        .build();
+
+    try {
+      batch.execute(calls("hold", "0", "1"));
+      fail();
+    } catch (InterruptedIOException e) {
+      assertThat(e).hasMessage("timeout");
+    } finally {
+      release.countDown();
+    }
+    assertThat(received.get()).isEqualTo(1);
+  }
+
+  @Test public void failureThrownAfterRemainingCallsComplete() {
+    CallBatch batch = new CallBatch.Builder().maxConcurrency(1).build();
+
+    try {
+      batch.execute(calls("fail", "0", "1"));
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("failed");
+    }
+    assertThat(received.get()).isEqualTo(2);
+  }
+
+  @Test public void cancelOnFailureStartsNoMoreCalls() {
+    CallBatch batch = new CallBatch.Builder().maxConcurrency(1).cancelOnFailure(true).build();
+
+    try {
+      batch.execute(calls("fail", "0", "1"));
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("failed");
+    }
+    assertThat(received.get()).isEqualTo(0);
+  }
+
+  @Test public void alreadyExecutedCallCancelsStartedCalls() throws IOException {
+    CallBatch batch = new CallBatch.Builder().build();
+    Call<String> executed = service.get("0");
+    executed.execute();
+    CancelRecordingCall held = new CancelRecordingCall(service.get("hold"));
+
+    List<Call<String>> calls = new ArrayList<>();
+    calls.add(held);
+    calls.add(executed);
+    calls.add(service.get("1"));
+    try {
+      batch.execute(calls);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Already executed");
+    } finally {
+      release.countDown();
+    }
+    assertThat(held.canceled).isTrue();
+  }
+
+  @Test public void alreadyExecutedCallStartedFromCallbackFailsBatch() throws IOException {
+    CallBatch batch = new CallBatch.Builder()
+        .maxConcurrency(1)
+        .timeout(5, SECONDS)
+        .build();
+    Call<String> executed = service.get("0");
+    executed.execute();
+
+    List<Call<String>> calls = new ArrayList<>();
+    calls.add(service.get("1"));
+    calls.add(executed);
+    calls.add(service.get("2"));
+    try {
+      batch.execute(calls);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Already executed");
+    }
+    assertThat(received.get()).isEqualTo(2);
+  }
+
+  static final class CancelRecordingCall implements Call<String> {
+    private final Call<String> delegate;
+    volatile boolean canceled;
+
+    CancelRecordingCall(Call<String> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override public Response<String> execute() throws IOException {
+      return delegate.execute();
+    }
+
+    @Override public void enqueue(Callback<String> callback) {
+      delegate.enqueue(callback);
+    }
+
+    @Override public void cancel() {
+      canceled = true;
+      delegate.cancel();
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone") // Performing deep clone.
+    @Override public Call<String> clone() {
+      return new CancelRecordingCall(delegate.clone());
+    }
+  }
+
+  @Test public void maxConcurrencyMustBePositive() {
+    try {
+      new CallBatch.Builder().maxConcurrency(0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("maxConcurrency < 1: 0");
+    }
+  }
+}
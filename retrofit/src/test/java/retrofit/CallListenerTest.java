@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import org.junit.Rule;
+import org.junit.Test;
+import retrofit.http.GET;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class CallListenerTest {
+  @Rule public final MockWebServer server = new MockWebServer();
+
+  interface Service {
+    @GET("/") Call<String> getString();
+  }
+
+  private final List<String> events = new CopyOnWriteArrayList<>();
+
+  private Service service(Executor callbackExecutor) {
+    Retrofit.Builder builder = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .callListenerFactory(new RecordingFactory());
+    if (callbackExecutor != null) {
+      builder.callbackExecutor(callbackExecutor);
+    }
+    return builder.build().create(Service.class);
+  }
+
+  @Test public void synchronousCall() throws IOException {
+    Service service = service(null);
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    assertThat(service.getString().execute().body()).isEqualTo("Hi");
+    assertThat(events).containsExactly(
+        "methodHandlerCreated getString",
+        "create getString",
+        "requestBuildStart",
+        "requestBuildEnd GET",
+        "networkStart",
+        "networkEnd 200",
+        "conversionStart",
+        "conversionEnd");
+  }
+
+  @Test public void methodHandlerCreatedOnlyOnce() throws IOException {
+    Service service = service(null);
+    server.enqueue(new MockResponse());
+    server.enqueue(new MockResponse());
+
+    service.getString().execute();
+    service.getString().execute();
+    assertThat(events).containsOnlyOnce("methodHandlerCreated getString");
+  }
+
+  @Test public void networkFailure() {
+    OkHttpClient client = new OkHttpClient();
+    client.interceptors().add(new Interceptor() {
+      @Override public com.squareup.okhttp.Response intercept(Chain chain) throws IOException {
+        throw new IOException("boom");
+      }
+    });
+    Service service = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .client(client)
+        .addConverterFactory(new ToStringConverterFactory())
+        .callListenerFactory(new RecordingFactory())
+        .build()
+        .create(Service.class);
+
+    try {
+      service.getString().execute();
+      fail();
+    } catch (IOException expected) {
+      assertThat(expected).hasMessage("boom");
+    }
+    assertThat(events).endsWith("networkStart", "networkFailed");
+  }
+
+  @Test public void asynchronousCallReportsCallbackDispatch() throws InterruptedException {
+    Service service = service(new Executor() {
+      @Override public void execute(Runnable command) {
+        events.add("execute");
+        command.run();
+      }
+    });
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    service.getString().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        events.add("onResponse");
+        latch.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        throw new AssertionError(t);
+      }
+    });
+    assertTrue(latch.await(10, SECONDS));
+    assertThat(events).containsSequence(
+        "conversionEnd",
+        "callbackDispatchStart",
+        "execute",
+        "callbackDispatchEnd",
+        "onResponse");
+  }
+
+  final class RecordingFactory extends CallListener.Factory {
+    @Override public CallListener create(Method method) {
+      events.add("create " + method.getName());
+      return new CallListener() {
+        @Override public void requestBuildStart() {
+          events.add("requestBuildStart");
+        }
+
+        @Override public void requestBuildEnd(Request request) {
+          events.add("requestBuildEnd " + request.method());
+        }
+
+        @Override public void networkStart(Request request) {
+          events.add("networkStart");
+        }
+
+        @Override public void networkEnd(com.squareup.okhttp.Response response) {
+          events.add("networkEnd " + response.code());
+        }
+
+        @Override public void networkFailed(IOException e) {
+          events.add("networkFailed");
+        }
+
+        @Override public void conversionStart() {
+          events.add("conversionStart");
+        }
+
+        @Override public void conversionEnd() {
+          events.add("conversionEnd");
+        }
+
+        @Override public void callbackDispatchStart() {
+          events.add("callbackDispatchStart");
+        }
+
+        @Override public void callbackDispatchEnd() {
+          events.add("callbackDispatchEnd");
+        }
+      };
+    }
+
+    @Override public void methodHandlerCreated(Method method, long durationNanos) {
+      events.add("methodHandlerCreated " + method.getName());
+    }
+  }
+}
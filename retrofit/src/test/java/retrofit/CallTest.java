@@ -23,8 +23,10 @@ import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.SocketPolicy;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.net.SocketTimeoutException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
 import okio.Buffer;
@@ -37,8 +39,10 @@ import retrofit.http.Body;
 import retrofit.http.GET;
 import retrofit.http.POST;
 import retrofit.http.Streaming;
+import retrofit.http.Timeout;
 
 import static com.squareup.okhttp.mockwebserver.SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -53,7 +57,10 @@ public final class CallTest {
     @GET("/") Call<String> getString();
     @GET("/") Call<ResponseBody> getBody();
     @GET("/") @Streaming Call<ResponseBody> getStreamingBody();
+    @GET("/") Call<BufferedSource> getSource();
     @POST("/") Call<String> postString(@Body String body);
+    @GET("/") @Timeout(call = 200) Call<String> getStringWithDeadline();
+    @GET("/") @Timeout(read = 200) Call<String> getStringWithReadTimeout();
   }
 
   @Test public void http200Sync() throws IOException {
@@ -113,6 +120,27 @@ public final class CallTest {
     assertThat(response.errorBody().string()).isEqualTo("Hi");
   }
 
+  @Test public void errorBodyLargerThanMaxSizeIsTruncated() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .maxErrorBodySize(4)
+        .build();
+    Service example = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setResponseCode(500).setBody("Internal Server Error"));
+    server.enqueue(new MockResponse().setResponseCode(500).setChunkedBody("Oops", 2));
+
+    Response<String> truncated = example.getString().execute();
+    assertThat(truncated.isErrorBodyTruncated()).isTrue();
+    assertThat(truncated.errorBody().contentLength()).isEqualTo(4);
+    assertThat(truncated.errorBody().string()).isEqualTo("Inte");
+
+    Response<String> complete = example.getString().execute();
+    assertThat(complete.isErrorBodyTruncated()).isFalse();
+    assertThat(complete.errorBody().string()).isEqualTo("Oops");
+  }
+
   @Test public void http404Async() throws InterruptedException, IOException {
     Retrofit retrofit = new Retrofit.Builder()
         .baseUrl(server.url("/"))
@@ -477,6 +505,86 @@ public final class CallTest {
     }
   }
 
+  @Test public void responseBodyLargerThanBufferLimitStreams() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .responseBodyBufferLimit(2)
+        .build();
+    Service example = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse()
+        .setBody("1234")
+        .setSocketPolicy(DISCONNECT_DURING_RESPONSE_BODY));
+
+    ResponseBody streamedBody = example.getBody().execute().body();
+    try {
+      streamedBody.string();
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("unexpected end of stream");
+    }
+  }
+
+  @Test public void responseBodyWithinBufferLimitIsBuffered() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .responseBodyBufferLimit(10)
+        .build();
+    Service example = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse()
+        .setBody("1234")
+        .setSocketPolicy(DISCONNECT_DURING_RESPONSE_BODY));
+
+    try {
+      example.getBody().execute();
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("unexpected end of stream");
+    }
+  }
+
+  @Test public void responseBodyOfUnknownLengthIsBufferedUpToLimit() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .responseBodyBufferLimit(4)
+        .build();
+    Service example = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setChunkedBody("123", 2));
+    server.enqueue(new MockResponse().setChunkedBody("123456789", 2));
+
+    ResponseBody small = example.getBody().execute().body();
+    assertThat(small.contentLength()).isEqualTo(3);
+    assertThat(small.string()).isEqualTo("123");
+
+    // The bytes read before the limit was exceeded are not lost.
+    ResponseBody large = example.getBody().execute().body();
+    assertThat(large.contentLength()).isEqualTo(-1);
+    assertThat(large.string()).isEqualTo("123456789");
+  }
+
+  @Test public void bufferedSourceIsNotBuffered() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .build();
+    Service example = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse()
+        .setBody("1234")
+        .setSocketPolicy(DISCONNECT_DURING_RESPONSE_BODY));
+
+    BufferedSource source = example.getSource().execute().body();
+    try {
+      source.readUtf8();
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("unexpected end of stream");
+    } finally {
+      source.close();
+    }
+  }
+
   @Test public void rawResponseContentTypeAndLengthButNoSource() throws IOException {
     Retrofit retrofit = new Retrofit.Builder()
         .baseUrl(server.url("/"))
@@ -605,4 +713,175 @@ public final class CallTest {
     assertTrue(latch.await(2, SECONDS));
     assertThat(failureRef.get()).isInstanceOf(IOException.class).hasMessage("Canceled");
   }
+
+  @Test public void callTimeoutSync() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+    try {
+      service.getStringWithDeadline().execute();
+      fail();
+    } catch (InterruptedIOException e) {
+      assertThat(e).hasMessage("timeout");
+    }
+  }
+
+  @Test public void callTimeoutAsync() throws InterruptedException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+    final AtomicReference<Throwable> failureRef = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    service.getStringWithDeadline().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        throw new AssertionError();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        failureRef.set(t);
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(2, SECONDS));
+    assertThat(failureRef.get()).isInstanceOf(InterruptedIOException.class).hasMessage("timeout");
+  }
+
+  @Test public void coalescedCallTimeoutIsNotDeliveredOnWatchdogThread()
+      throws InterruptedException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .coalesceRequests(true)
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+    final AtomicReference<Thread> threadRef = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    service.getStringWithDeadline().enqueue(new Callback<String>() {
+      @Override public void onResponse(Response<String> response) {
+        throw new AssertionError();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        threadRef.set(Thread.currentThread());
+        latch.countDown();
+      }
+    });
+
+    assertTrue(latch.await(2, SECONDS));
+    assertThat(threadRef.get().getName()).doesNotContain("Okio Watchdog");
+  }
+
+  @Test public void callTimeoutNotReachedSync() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    assertThat(service.getStringWithDeadline().execute().body()).isEqualTo("Hi");
+  }
+
+  @Test public void readTimeoutOverride() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+    try {
+      service.getStringWithReadTimeout().execute();
+      fail();
+    } catch (SocketTimeoutException expected) {
+    }
+    // The override applies to a copy; the shared client keeps its own timeout.
+    assertThat(retrofit.client().getReadTimeout()).isEqualTo(10000);
+  }
+
+  @Test public void expiredDeadlineFailsWithoutRequest() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    Deadline deadline = Deadline.after(-1, MILLISECONDS);
+    Deadline previous = deadline.attach();
+    Call<String> call;
+    try {
+      call = service.getString();
+    } finally {
+      deadline.detach(previous);
+    }
+
+    try {
+      call.execute();
+      fail();
+    } catch (InterruptedIOException e) {
+      assertThat(e).hasMessage("deadline exceeded");
+    }
+    assertThat(server.getRequestCount()).isEqualTo(0);
+  }
+
+  @Test public void deadlineCancelsInFlightCall() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+    Deadline deadline = Deadline.after(200, MILLISECONDS);
+    Deadline previous = deadline.attach();
+    try {
+      service.getString().execute();
+      fail();
+    } catch (InterruptedIOException e) {
+      assertThat(e).hasMessage("timeout");
+    } finally {
+      deadline.detach(previous);
+    }
+  }
+
+  @Test public void deadlineKeptByClone() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .build();
+    Service service = retrofit.create(Service.class);
+
+    Deadline deadline = Deadline.after(-1, MILLISECONDS);
+    Deadline previous = deadline.attach();
+    Call<String> call;
+    try {
+      call = service.getString();
+    } finally {
+      deadline.detach(previous);
+    }
+
+    try {
+      call.clone().execute();
+      fail();
+    } catch (InterruptedIOException e) {
+      assertThat(e).hasMessage("deadline exceeded");
+    }
+  }
 }
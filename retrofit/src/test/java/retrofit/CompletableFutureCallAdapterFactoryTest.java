@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.google.common.reflect.TypeToken;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import retrofit.http.GET;
+
+import static com.squareup.okhttp.mockwebserver.SocketPolicy.DISCONNECT_AFTER_REQUEST;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class CompletableFutureCallAdapterFactoryTest {
+  private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+  @Rule public final MockWebServer server = new MockWebServer();
+
+  interface Service {
+    @GET("/") CompletableFuture<String> body();
+    @GET("/") CompletableFuture<Response<String>> response();
+  }
+
+  private final AtomicBoolean callbackExecutorUsed = new AtomicBoolean();
+  private Retrofit retrofit;
+  private Service service;
+
+  @Before public void setUp() {
+    retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .callbackExecutor(new Executor() {
+          @Override public void execute(Runnable command) {
+            callbackExecutorUsed.set(true);
+            command.run();
+          }
+        })
+        .build();
+    service = retrofit.create(Service.class);
+  }
+
+  @Test public void bodySuccess200() throws Exception {
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    assertThat(service.body().get()).isEqualTo("Hi");
+  }
+
+  @Test public void bodySuccess404() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404));
+
+    try {
+      service.body().get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(HttpException.class).hasMessage("HTTP 404 OK");
+    }
+  }
+
+  @Test public void bodyFailure() throws Exception {
+    server.enqueue(new MockResponse().setSocketPolicy(DISCONNECT_AFTER_REQUEST));
+
+    try {
+      service.body().get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IOException.class);
+    }
+  }
+
+  @Test public void responseSuccess200() throws Exception {
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    Response<String> response = service.response().get();
+    assertThat(response.isSuccess()).isTrue();
+    assertThat(response.body()).isEqualTo("Hi");
+  }
+
+  @Test public void responseSuccess404() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404).setBody("Hi"));
+
+    Response<String> response = service.response().get();
+    assertThat(response.isSuccess()).isFalse();
+    assertThat(response.errorBody().string()).isEqualTo("Hi");
+  }
+
+  @Test public void responseFailure() throws Exception {
+    server.enqueue(new MockResponse().setSocketPolicy(DISCONNECT_AFTER_REQUEST));
+
+    try {
+      service.response().get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(IOException.class);
+    }
+  }
+
+  @Test public void completesWithoutCallbackExecutor() throws Exception {
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    final AtomicReference<String> completionThread = new AtomicReference<>();
+    CompletableFuture<String> future = service.body().whenComplete(
+        new BiConsumer<String, Throwable>() {
+          @Override public void accept(String body, Throwable t) {
+            completionThread.set(Thread.currentThread().getName());
+          }
+        });
+    assertThat(future.get()).isEqualTo("Hi");
+    assertThat(callbackExecutorUsed.get()).isFalse();
+    assertThat(completionThread.get()).isNotEqualTo(Thread.currentThread().getName());
+  }
+
+  @Test public void cancelCancelsCall() {
+    final AtomicBoolean canceled = new AtomicBoolean();
+    Call<String> call = new Call<String>() {
+      @Override public Response<String> execute() throws IOException {
+        throw new AssertionError();
+      }
+
+      @Override public void enqueue(Callback<String> callback) {
+      }
+
+      @Override public void cancel() {
+        canceled.set(true);
+      }
+
+      @SuppressWarnings("CloneDoesntCallSuperClone")
+      @Override public Call<String> clone() {
+        throw new AssertionError();
+      }
+    };
+
+    Type returnType = new TypeToken<CompletableFuture<String>>() {}.getType();
+    CallAdapter<?> adapter =
+        CompletableFutureCallAdapterFactory.INSTANCE.get(returnType, NO_ANNOTATIONS, retrofit);
+    CompletableFuture<?> future = (CompletableFuture<?>) adapter.adapt(call);
+    assertThat(future.cancel(true)).isTrue();
+    assertThat(canceled.get()).isTrue();
+  }
+
+  @Test public void responseType() {
+    Type bodyClass = new TypeToken<CompletableFuture<String>>() {}.getType();
+    assertThat(CompletableFutureCallAdapterFactory.INSTANCE
+        .get(bodyClass, NO_ANNOTATIONS, retrofit).responseType()).isEqualTo(String.class);
+    Type responseClass = new TypeToken<CompletableFuture<Response<String>>>() {}.getType();
+    assertThat(CompletableFutureCallAdapterFactory.INSTANCE
+        .get(responseClass, NO_ANNOTATIONS, retrofit).responseType()).isEqualTo(String.class);
+  }
+
+  @Test public void rawTypeThrows() {
+    try {
+      CompletableFutureCallAdapterFactory.INSTANCE
+          .get(CompletableFuture.class, NO_ANNOTATIONS, retrofit);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("CompletableFuture return type must be parameterized"
+          + " as CompletableFuture<Foo> or CompletableFuture<? extends Foo>");
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class DeadlineTest {
+  @Test public void attachAndDetach() {
+    assertThat(Deadline.current()).isNull();
+
+    Deadline outer = Deadline.after(10, SECONDS);
+    Deadline outerPrevious = outer.attach();
+    assertThat(outerPrevious).isNull();
+    assertThat(Deadline.current()).isSameAs(outer);
+
+    Deadline inner = Deadline.after(1, SECONDS);
+    Deadline innerPrevious = inner.attach();
+    assertThat(innerPrevious).isSameAs(outer);
+    assertThat(Deadline.current()).isSameAs(inner);
+
+    inner.detach(innerPrevious);
+    assertThat(Deadline.current()).isSameAs(outer);
+    outer.detach(outerPrevious);
+    assertThat(Deadline.current()).isNull();
+  }
+
+  @Test public void detachWhenNotCurrentThrows() {
+    Deadline deadline = Deadline.after(1, SECONDS);
+    try {
+      deadline.detach(null);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Deadline is not attached to this thread.");
+    }
+  }
+
+  @Test public void expiry() {
+    Deadline passed = Deadline.after(-1, MILLISECONDS);
+    assertThat(passed.isExpired()).isTrue();
+    assertThat(passed.timeRemaining(MILLISECONDS)).isEqualTo(0);
+
+    Deadline future = Deadline.after(10, SECONDS);
+    assertThat(future.isExpired()).isFalse();
+    assertThat(future.timeRemaining(SECONDS)).isGreaterThan(0);
+  }
+
+  @Test public void minimum() {
+    Deadline sooner = Deadline.after(1, SECONDS);
+    Deadline later = Deadline.after(10, SECONDS);
+    assertThat(sooner.minimum(later)).isSameAs(sooner);
+    assertThat(later.minimum(sooner)).isSameAs(sooner);
+    assertThat(later.minimum(null)).isSameAs(later);
+  }
+}
@@ -1,6 +1,7 @@
 // Copyright 2013 Square, Inc.
 package retrofit;
 
+import com.squareup.okhttp.HttpUrl;
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
@@ -9,8 +10,10 @@ import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
 import com.squareup.okhttp.ResponseBody;
 import java.io.IOException;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -40,6 +43,7 @@ import retrofit.http.PartMap;
 import retrofit.http.Path;
 import retrofit.http.Query;
 import retrofit.http.QueryMap;
+import retrofit.http.Timeout;
 import retrofit.http.Url;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -360,6 +364,39 @@ public final class RequestBuilderTest {
     }
   }
 
+  @Test public void timeoutFailsWhenEmpty() {
+    class Example {
+      @GET("/") //
+      @Timeout //
+      Call<ResponseBody> method() {
+        return null;
+      }
+    }
+    try {
+      buildRequest(Example.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("@Timeout annotation is empty.\n    for method Example.method");
+    }
+  }
+
+  @Test public void timeoutFailsWhenNegative() {
+    class Example {
+      @GET("/") //
+      @Timeout(read = -2) //
+      Call<ResponseBody> method() {
+        return null;
+      }
+    }
+    try {
+      buildRequest(Example.class);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage(
+          "@Timeout values must be -1 (unset) or greater.\n    for method Example.method");
+    }
+  }
+
   @Test public void headersFailWhenMalformed() {
     class Example {
       @GET("/") //
@@ -624,6 +661,84 @@ public final class RequestBuilderTest {
     assertThat(request.body()).isNull();
   }
 
+  @Test public void getWithUnicodePathParam() {
+    class Example {
+      @GET("/foo/bar/{ping}/") //
+      Call<ResponseBody> method(@Path("ping") String ping) {
+        return null;
+      }
+    }
+    Request request = buildRequest(Example.class, "a/\u00e9\u20ac\ud83c\udf69 100%");
+    assertThat(request.method()).isEqualTo("GET");
+    assertThat(request.headers().size()).isZero();
+    assertThat(request.urlString()).isEqualTo(
+        "http://example.com/foo/bar/a%2F%C3%A9%E2%82%AC%F0%9F%8D%A9%20100%25/");
+    assertThat(request.body()).isNull();
+  }
+
+  @Test public void getWithRepeatedPathParam() {
+    class Example {
+      @GET("/foo/{ping}/bar/{ping}/{kit}") //
+      Call<ResponseBody> method(@Path("kit") String kit, @Path("ping") String ping) {
+        return null;
+      }
+    }
+    Request request = buildRequest(Example.class, "kat", "po ng");
+    assertThat(request.method()).isEqualTo("GET");
+    assertThat(request.headers().size()).isZero();
+    assertThat(request.urlString()).isEqualTo("http://example.com/foo/po%20ng/bar/po%20ng/kat");
+    assertThat(request.body()).isNull();
+  }
+
+  @Test public void getWithPathParamAgainstChangingBaseUrl() throws IOException {
+    class Example {
+      @GET("foo/{ping}/") //
+      Call<ResponseBody> method(@Path("ping") String ping) {
+        return null;
+      }
+    }
+
+    final AtomicReference<HttpUrl> baseUrl =
+        new AtomicReference<>(HttpUrl.parse("http://example.com/api/?q=1#top"));
+    final List<Request> requests = new ArrayList<>();
+    OkHttpClient client = new OkHttpClient();
+    client.interceptors().add(new Interceptor() {
+      @Override public Response intercept(Chain chain) throws IOException {
+        requests.add(chain.request());
+        throw new UnsupportedOperationException("Not implemented");
+      }
+    });
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(new BaseUrl() {
+          @Override public HttpUrl url() {
+            return baseUrl.get();
+          }
+        })
+        .addConverterFactory(new ToStringConverterFactory())
+        .client(client)
+        .build();
+    MethodHandler<?> handler = retrofit.loadMethodHandler(TestingUtils.onlyMethod(Example.class));
+
+    for (String ping : Arrays.asList("pong", "po ng")) {
+      try {
+        ((Call<?>) handler.invoke(new Object[] { ping })).execute();
+        fail();
+      } catch (UnsupportedOperationException ignored) {
+      }
+    }
+    baseUrl.set(HttpUrl.parse("https://example.org/v2/index.html"));
+    try {
+      ((Call<?>) handler.invoke(new Object[] { "pong" })).execute();
+      fail();
+    } catch (UnsupportedOperationException ignored) {
+    }
+
+    assertThat(requests).hasSize(3);
+    assertThat(requests.get(0).urlString()).isEqualTo("http://example.com/api/foo/pong/");
+    assertThat(requests.get(1).urlString()).isEqualTo("http://example.com/api/foo/po%20ng/");
+    assertThat(requests.get(2).urlString()).isEqualTo("https://example.org/v2/foo/pong/");
+  }
+
   @Test public void getWithUnusedAndInvalidNamedPathParam() {
     class Example {
       @GET("/foo/bar/{ping}/{kit,kat}/") //
@@ -1294,6 +1409,52 @@ public final class RequestBuilderTest {
     assertThat(bodyString).doesNotContain("name=\"foo\"\r\n");
   }
 
+  @Test public void multipartPartMapManyKeys() throws IOException {
+    class Example {
+      @Multipart //
+      @POST("/foo/bar/") //
+      Call<ResponseBody> method(@PartMap Map<String, Object> parts) {
+        return null;
+      }
+    }
+
+    // More keys than are interned.
+    Map<String, Object> params = new LinkedHashMap<>();
+    for (int i = 0; i < 100; i++) {
+      params.put("key" + i, "value" + i);
+      params.put("KEY" + i, "VALUE" + i);
+    }
+
+    Request request = buildRequest(Example.class, params);
+    Buffer buffer = new Buffer();
+    request.body().writeTo(buffer);
+    String bodyString = buffer.readUtf8();
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(bodyString)
+          .contains("name=\"key" + i + "\"\r\n")
+          .contains("\r\nvalue" + i + "\r\n--")
+          .contains("name=\"KEY" + i + "\"\r\n")
+          .contains("\r\nVALUE" + i + "\r\n--");
+    }
+  }
+
+  @Test public void multipartPartMapInternsHeadersUpToLimit() {
+    RequestAction.PartMap action = new RequestAction.PartMap(null, "binary", new Annotation[0]);
+    com.squareup.okhttp.Headers first = action.headers("key0");
+    assertThat(action.headers("key0")).isSameAs(first);
+
+    for (int i = 1; i < RequestAction.PartMap.MAX_INTERNED_HEADERS; i++) {
+      action.headers("key" + i);
+    }
+    assertThat(action.headers("key0")).isSameAs(first);
+
+    // The limit is reached so new names are no longer interned.
+    com.squareup.okhttp.Headers overflow = action.headers("overflow");
+    assertThat(overflow.get("Content-Disposition")).isEqualTo("form-data; name=\"overflow\"");
+    assertThat(action.headers("overflow")).isNotSameAs(overflow);
+  }
+
   @Test public void multipartPartMapWithEncoding() throws IOException {
     class Example {
       @Multipart //
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.ResponseBody;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import retrofit.http.GET;
+import retrofit.http.POST;
+import retrofit.http.Path;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public final class RequestCoalescerTest {
+  @Rule public final MockWebServer server = new MockWebServer();
+
+  interface Service {
+    @GET("/{path}") Call<String> get(@Path("path") String path);
+    @GET("/{path}") Call<ResponseBody> getBody(@Path("path") String path);
+    @POST("/{path}") Call<String> post(@Path("path") String path);
+  }
+
+  /** Holds each request until {@link #release} is called. */
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+  private Service service;
+
+  @Before public void setUp() {
+    server.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        received.add(request.getPath());
+        release.await();
+        return new MockResponse().setBody("Hi " + request.getPath());
+      }
+    });
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .coalesceRequests(true)
+        .build();
+    service = retrofit.create(Service.class);
+  }
+
+  @Test public void identicalCallsShareNetworkCall() throws InterruptedException {
+    RecordingCallback<String> first = new RecordingCallback<>();
+    RecordingCallback<String> second = new RecordingCallback<>();
+    service.get("a").enqueue(first);
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    service.get("a").enqueue(second);
+    release.countDown();
+
+    assertThat(first.awaitResponse().body()).isEqualTo("Hi /a");
+    assertThat(second.awaitResponse().body()).isSameAs(first.awaitResponse().body());
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void synchronousCallsShareNetworkCall() throws Exception {
+    final AtomicReference<Response<String>> firstRef = new AtomicReference<>();
+    Thread thread = new Thread() {
+      @Override public void run() {
+        try {
+          firstRef.set(service.get("a").execute());
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    thread.start();
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+
+    RecordingCallback<String> second = new RecordingCallback<>();
+    service.get("a").enqueue(second);
+    release.countDown();
+    thread.join(2000);
+
+    assertThat(firstRef.get().body()).isSameAs(second.awaitResponse().body());
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void differentCallsDoNotShare() throws InterruptedException {
+    RecordingCallback<String> first = new RecordingCallback<>();
+    RecordingCallback<String> second = new RecordingCallback<>();
+    service.get("a").enqueue(first);
+    service.get("b").enqueue(second);
+    release.countDown();
+
+    assertThat(first.awaitResponse().body()).isEqualTo("Hi /a");
+    assertThat(second.awaitResponse().body()).isEqualTo("Hi /b");
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void rawBodiesAndPostsNotShared() throws InterruptedException {
+    service.getBody("a").enqueue(new RecordingCallback<ResponseBody>());
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    service.getBody("a").enqueue(new RecordingCallback<ResponseBody>());
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+
+    service.post("a").enqueue(new RecordingCallback<String>());
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    service.post("a").enqueue(new RecordingCallback<String>());
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    release.countDown();
+  }
+
+  @Test public void truncatedErrorBodyIsReportedToEveryWaiter()
+      throws InterruptedException, IOException {
+    server.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        received.add(request.getPath());
+        release.await();
+        return new MockResponse().setResponseCode(500).setBody("Internal Server Error");
+      }
+    });
+    Service service = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .coalesceRequests(true)
+        .maxErrorBodySize(4)
+        .build()
+        .create(Service.class);
+
+    RecordingCallback<String> first = new RecordingCallback<>();
+    RecordingCallback<String> second = new RecordingCallback<>();
+    service.get("a").enqueue(first);
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    service.get("a").enqueue(second);
+    release.countDown();
+
+    for (RecordingCallback<String> callback : Arrays.asList(first, second)) {
+      Response<String> response = callback.awaitResponse();
+      assertThat(response.isErrorBodyTruncated()).isTrue();
+      assertThat(response.errorBody().string()).isEqualTo("Inte");
+    }
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void cancelingOneWaiterDoesNotAffectOthers() throws InterruptedException {
+    RecordingCallback<String> first = new RecordingCallback<>();
+    RecordingCallback<String> second = new RecordingCallback<>();
+    service.get("a").enqueue(first);
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    Call<String> secondCall = service.get("a");
+    secondCall.enqueue(second);
+
+    secondCall.cancel();
+    assertThat(second.awaitFailure()).isInstanceOf(IOException.class).hasMessage("Canceled");
+
+    release.countDown();
+    assertThat(first.awaitResponse().body()).isEqualTo("Hi /a");
+  }
+
+  @Test public void cancelingAllWaitersCancelsNetworkCall() throws InterruptedException {
+    RecordingCallback<String> first = new RecordingCallback<>();
+    RecordingCallback<String> second = new RecordingCallback<>();
+    Call<String> firstCall = service.get("a");
+    firstCall.enqueue(first);
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    Call<String> secondCall = service.get("a");
+    secondCall.enqueue(second);
+
+    firstCall.cancel();
+    secondCall.cancel();
+    assertThat(first.awaitFailure()).hasMessage("Canceled");
+    assertThat(second.awaitFailure()).hasMessage("Canceled");
+
+    // A new call does not join the canceled network call.
+    RecordingCallback<String> third = new RecordingCallback<>();
+    service.get("a").enqueue(third);
+    assertThat(received.poll(2, SECONDS)).isEqualTo("/a");
+    release.countDown();
+    assertThat(third.awaitResponse().body()).isEqualTo("Hi /a");
+  }
+
+  static final class RecordingCallback<T> implements Callback<T> {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final AtomicReference<Response<T>> response = new AtomicReference<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    @Override public void onResponse(Response<T> response) {
+      this.response.set(response);
+      latch.countDown();
+    }
+
+    @Override public void onFailure(Throwable t) {
+      failure.set(t);
+      latch.countDown();
+    }
+
+    Response<T> awaitResponse() throws InterruptedException {
+      assertTrue(latch.await(2, SECONDS));
+      assertThat(failure.get()).isNull();
+      return response.get();
+    }
+
+    Throwable awaitFailure() throws InterruptedException {
+      assertTrue(latch.await(2, SECONDS));
+      return failure.get();
+    }
+  }
+}
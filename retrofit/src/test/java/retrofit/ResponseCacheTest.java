@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrofit;
+
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import retrofit.http.Body;
+import retrofit.http.GET;
+import retrofit.http.Header;
+import retrofit.http.POST;
+import retrofit.http.Path;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public final class ResponseCacheTest {
+  @Rule public final MockWebServer server = new MockWebServer();
+
+  interface Service {
+    @GET("/{path}") Call<String> get(@Path("path") String path);
+    @GET("/a") Call<String> getWithHeader(@Header("Accept-Language") String language);
+    @POST("/{path}") Call<String> post(@Path("path") String path, @Body String body);
+  }
+
+  private ResponseCache cache;
+  private Service service;
+
+  @Before public void setUp() {
+    cache = ResponseCache.create(2, 100);
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addConverterFactory(new ToStringConverterFactory())
+        .responseCache(cache)
+        .build();
+    service = retrofit.create(Service.class);
+  }
+
+  @Test public void createValidatesLimits() {
+    try {
+      ResponseCache.create(0, 100);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("maxEntries <= 0: 0");
+    }
+    try {
+      ResponseCache.create(1, 0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("maxSize <= 0: 0");
+    }
+  }
+
+  @Test public void freshResponseServedWithoutNetwork() throws IOException {
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("Hi"));
+
+    Response<String> first = service.get("a").execute();
+    Response<String> second = service.get("a").execute();
+    assertThat(first.body()).isEqualTo("Hi");
+    assertThat(second.body()).isSameAs(first.body());
+    assertThat(second.headers().get("Cache-Control")).isEqualTo("max-age=60");
+    assertThat(server.getRequestCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+    assertThat(cache.entryCount()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(2);
+  }
+
+  @Test public void responseFreshUntilExpiresServedWithoutNetwork() throws IOException {
+    long now = System.currentTimeMillis();
+    server.enqueue(new MockResponse()
+        .addHeader("Date: " + httpDate(now - MINUTES.toMillis(10)))
+        .addHeader("Expires: " + httpDate(now + MINUTES.toMillis(50)))
+        .setBody("Hi"));
+
+    Response<String> first = service.get("a").execute();
+    Response<String> second = service.get("a").execute();
+    assertThat(second.body()).isSameAs(first.body());
+    assertThat(server.getRequestCount()).isEqualTo(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+  }
+
+  @Test public void responseExpiredWhenSentIsNotStored() throws IOException {
+    long now = System.currentTimeMillis();
+    server.enqueue(new MockResponse()
+        .addHeader("Date: " + httpDate(now))
+        .addHeader("Expires: " + httpDate(now - MINUTES.toMillis(1)))
+        .setBody("Hi"));
+    server.enqueue(new MockResponse().setBody("Hey"));
+
+    assertThat(service.get("a").execute().body()).isEqualTo("Hi");
+    assertThat(service.get("a").execute().body()).isEqualTo("Hey");
+    assertThat(cache.entryCount()).isEqualTo(0);
+  }
+
+  @Test public void staleResponseRevalidatedWithETag() throws IOException, InterruptedException {
+    server.enqueue(new MockResponse().addHeader("ETag: \"v1\"").setBody("Hi"));
+    server.enqueue(new MockResponse().setResponseCode(304).addHeader("X-Served: again"));
+
+    Response<String> first = service.get("a").execute();
+    Response<String> second = service.get("a").execute();
+    assertThat(second.code()).isEqualTo(200);
+    assertThat(second.body()).isSameAs(first.body());
+    assertThat(second.headers().get("ETag")).isEqualTo("\"v1\"");
+    assertThat(second.headers().get("X-Served")).isEqualTo("again");
+
+    assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+    assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("\"v1\"");
+    assertThat(cache.conditionalHitCount()).isEqualTo(1);
+  }
+
+  @Test public void changedResponseReplacesEntry() throws IOException {
+    server.enqueue(new MockResponse().addHeader("ETag: \"v1\"").setBody("Hi"));
+    server.enqueue(new MockResponse().addHeader("ETag: \"v2\"").setBody("Hey"));
+
+    assertThat(service.get("a").execute().body()).isEqualTo("Hi");
+    assertThat(service.get("a").execute().body()).isEqualTo("Hey");
+    assertThat(cache.entryCount()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(3);
+  }
+
+  @Test public void noStoreNotCached() throws IOException {
+    server.enqueue(new MockResponse().addHeader("Cache-Control: no-store, max-age=60")
+        .setBody("Hi"));
+    server.enqueue(new MockResponse().setBody("Hey"));
+
+    assertThat(service.get("a").execute().body()).isEqualTo("Hi");
+    assertThat(service.get("a").execute().body()).isEqualTo("Hey");
+    assertThat(cache.entryCount()).isZero();
+  }
+
+  @Test public void withoutFreshnessOrValidatorNotCached() throws IOException {
+    server.enqueue(new MockResponse().setBody("Hi"));
+
+    service.get("a").execute();
+    assertThat(cache.entryCount()).isZero();
+  }
+
+  @Test public void errorNotCached() throws IOException {
+    server.enqueue(new MockResponse().setResponseCode(404).addHeader("Cache-Control: max-age=60")
+        .setBody("Nope"));
+
+    assertThat(service.get("a").execute().isSuccess()).isFalse();
+    assertThat(cache.entryCount()).isZero();
+  }
+
+  @Test public void requestHeadersArePartOfKey() throws IOException {
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("Hi"));
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("Hallo"));
+
+    assertThat(service.getWithHeader("en").execute().body()).isEqualTo("Hi");
+    assertThat(service.getWithHeader("de").execute().body()).isEqualTo("Hallo");
+    assertThat(service.getWithHeader("en").execute().body()).isEqualTo("Hi");
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test public void unsafeMethodInvalidatesUrl() throws IOException {
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("Hi"));
+    server.enqueue(new MockResponse().setBody("Posted"));
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("Hey"));
+
+    assertThat(service.get("a").execute().body()).isEqualTo("Hi");
+    service.post("a", "Update").execute();
+    assertThat(service.get("a").execute().body()).isEqualTo("Hey");
+    assertThat(server.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test public void leastRecentlyUsedEvictedByCount() throws IOException {
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("A"));
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("B"));
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("C"));
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("B2"));
+
+    service.get("a").execute();
+    service.get("b").execute();
+    service.get("a").execute(); // Hit, making 'b' the least recently used.
+    service.get("c").execute();
+    assertThat(cache.entryCount()).isEqualTo(2);
+
+    assertThat(service.get("a").execute().body()).isEqualTo("A");
+    assertThat(service.get("b").execute().body()).isEqualTo("B2");
+  }
+
+  @Test public void leastRecentlyUsedEvictedBySize() throws IOException {
+    StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 60; i++) {
+      large.append('x');
+    }
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("A"));
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60")
+        .setBody(large.toString()));
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60")
+        .setBody(large.toString()));
+
+    service.get("a").execute();
+    service.get("b").execute();
+    service.get("c").execute();
+    assertThat(cache.entryCount()).isEqualTo(1);
+    assertThat(cache.size()).isEqualTo(60);
+  }
+
+  @Test public void evictAll() throws IOException {
+    server.enqueue(new MockResponse().addHeader("Cache-Control: max-age=60").setBody("Hi"));
+
+    service.get("a").execute();
+    cache.evictAll();
+    assertThat(cache.entryCount()).isZero();
+    assertThat(cache.size()).isZero();
+  }
+
+  private static String httpDate(long millis) {
+    DateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(new Date(millis));
+  }
+}
@@ -11,16 +11,23 @@ import com.squareup.okhttp.mockwebserver.MockWebServer;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Rule;
 import org.junit.Test;
@@ -37,6 +44,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -75,6 +83,23 @@ public final class RetrofitTest {
     @Retention(RUNTIME)
     @interface Foo {}
   }
+  interface Generated {
+    @GET("/") Call<ResponseBody> get();
+  }
+
+  /** Stands in for the implementation retrofit-compiler would generate for {@link Generated}. */
+  @SuppressWarnings("unchecked")
+  public static final class Generated$$RetrofitImpl implements Generated {
+    private final MethodBinding m0;
+
+    public Generated$$RetrofitImpl(Retrofit retrofit) {
+      this.m0 = MethodBinding.bind(retrofit, Generated.class, "get");
+    }
+
+    @Override public Call<ResponseBody> get() {
+      return (Call<ResponseBody>) this.m0.invoke();
+    }
+  }
 
   @SuppressWarnings("EqualsBetweenInconvertibleTypes") // We are explicitly testing this behavior.
   @Test public void objectMethodsStillWork() {
@@ -149,6 +174,59 @@ public final class RetrofitTest {
     }
   }
 
+  @Test public void generatedImplementationUsedWhenPresent() throws IOException {
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .build();
+    Generated service = retrofit.create(Generated.class);
+    assertThat(service).isInstanceOf(Generated$$RetrofitImpl.class);
+
+    server.enqueue(new MockResponse().setBody("Hi"));
+    Response<ResponseBody> response = service.get().execute();
+    assertThat(response.body().string()).isEqualTo("Hi");
+  }
+
+  @Test public void methodHandlerCreatedOnceAcrossThreads() throws Exception {
+    final AtomicInteger factoryCalls = new AtomicInteger();
+    class CountingCallAdapterFactory implements CallAdapter.Factory {
+      @Override public CallAdapter<?> get(Type returnType, Annotation[] annotations,
+          Retrofit retrofit) {
+        factoryCalls.incrementAndGet();
+        return null; // Defer to the default adapter.
+      }
+    }
+
+    final Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .addCallAdapterFactory(new CountingCallAdapterFactory())
+        .build();
+    final Method method = CallMethod.class.getDeclaredMethod("getResponseBody");
+
+    int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<MethodHandler<?>>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(new Callable<MethodHandler<?>>() {
+          @Override public MethodHandler<?> call() throws Exception {
+            start.await();
+            return retrofit.loadMethodHandler(method);
+          }
+        }));
+      }
+      start.countDown();
+
+      MethodHandler<?> first = futures.get(0).get(10, TimeUnit.SECONDS);
+      for (Future<MethodHandler<?>> future : futures) {
+        assertThat(future.get(10, TimeUnit.SECONDS)).isSameAs(first);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(factoryCalls.get()).isEqualTo(1);
+  }
+
   @Test public void callCallAdapterAddedByDefault() {
     Retrofit retrofit = new Retrofit.Builder()
         .baseUrl(server.url("/"))
@@ -251,8 +329,14 @@ public final class RetrofitTest {
       assertThat(e).hasMessage(
           "Unable to create call adapter for java.util.concurrent.Future<java.lang.String>\n"
               + "    for method FutureMethod.method");
+      // The CompletableFuture factory is only a default where the runtime has CompletableFuture.
+      String completableFutureFactory =
+          Platform.get().completableFutureCallAdapterFactory() != null
+              ? " * retrofit.CompletableFutureCallAdapterFactory\n"
+              : "";
       assertThat(e.getCause()).hasMessage(
           "Could not locate call adapter for java.util.concurrent.Future<java.lang.String>. Tried:\n"
+              + completableFutureFactory
               + " * retrofit.DefaultCallAdapter$1");
     }
   }
@@ -547,6 +631,42 @@ public final class RetrofitTest {
     assertThat(retrofit.client()).isSameAs(client);
   }
 
+  @Test public void virtualThreadsUsedWhenSupported() throws InterruptedException {
+    OkHttpClient client = new OkHttpClient();
+    client.getDispatcher().setMaxRequestsPerHost(3);
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(server.url("/"))
+        .client(client)
+        .useVirtualThreads(true)
+        .build();
+    CallMethod example = retrofit.create(CallMethod.class);
+
+    boolean supported = Platform.get().virtualThreadExecutor() != null;
+    if (supported) {
+      assertThat(retrofit.client()).isNotSameAs(client);
+      assertThat(retrofit.client().getDispatcher()).isNotSameAs(client.getDispatcher());
+      assertThat(retrofit.client().getDispatcher().getMaxRequestsPerHost()).isEqualTo(3);
+    } else {
+      assertThat(retrofit.client()).isSameAs(client);
+    }
+
+    server.enqueue(new MockResponse().setBody("Hi"));
+    final AtomicReference<String> threadName = new AtomicReference<>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    example.getResponseBody().enqueue(new Callback<ResponseBody>() {
+      @Override public void onResponse(Response<ResponseBody> response) {
+        threadName.set(Thread.currentThread().toString());
+        latch.countDown();
+      }
+
+      @Override public void onFailure(Throwable t) {
+        t.printStackTrace();
+      }
+    });
+    assertTrue(latch.await(2, TimeUnit.SECONDS));
+    assertThat(threadName.get().startsWith("VirtualThread")).isEqualTo(supported);
+  }
+
   @Test public void converterNullThrows() {
     try {
       new Retrofit.Builder().addConverterFactory(null);
@@ -661,6 +781,86 @@ public final class RetrofitTest {
     verifyNoMoreInteractions(factory1);
   }
 
+  @Test public void converterLookupsAreCached() {
+    Type type = String.class;
+
+    Converter<?, RequestBody> requestConverter = mock(Converter.class);
+    Converter<ResponseBody, ?> responseConverter = mock(Converter.class);
+    Converter.Factory factory = mock(Converter.Factory.class);
+
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl("http://example.com/")
+        .addConverterFactory(factory)
+        .cacheConverters(true)
+        .build();
+
+    doReturn(requestConverter).when(factory).toRequestBody(type, new Annotation[0]);
+    doReturn(responseConverter).when(factory).fromResponseBody(type, new Annotation[0]);
+
+    // Equal annotation arrays share the cached converter even when they are distinct instances.
+    assertThat(retrofit.requestConverter(type, new Annotation[0])).isSameAs(requestConverter);
+    assertThat(retrofit.requestConverter(type, new Annotation[0])).isSameAs(requestConverter);
+    assertThat(retrofit.responseConverter(type, new Annotation[0])).isSameAs(responseConverter);
+    assertThat(retrofit.responseConverter(type, new Annotation[0])).isSameAs(responseConverter);
+
+    verify(factory, times(1)).toRequestBody(type, new Annotation[0]);
+    verify(factory, times(1)).fromResponseBody(type, new Annotation[0]);
+    verifyNoMoreInteractions(factory);
+  }
+
+  @Test public void converterLookupsAreNotCachedByDefault() {
+    Type type = String.class;
+    Annotation[] annotations = new Annotation[0];
+
+    Converter<?, RequestBody> expectedAdapter = mock(Converter.class);
+    Converter.Factory factory = mock(Converter.Factory.class);
+
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl("http://example.com/")
+        .addConverterFactory(factory)
+        .build();
+
+    doReturn(expectedAdapter).when(factory).toRequestBody(type, annotations);
+
+    retrofit.requestConverter(type, annotations);
+    retrofit.requestConverter(type, annotations);
+
+    verify(factory, times(2)).toRequestBody(type, annotations);
+    verifyNoMoreInteractions(factory);
+  }
+
+  @Test public void converterLookupCacheIsBounded() {
+    final AtomicInteger lookups = new AtomicInteger();
+    Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl("http://example.com/")
+        .addConverterFactory(new Converter.Factory() {
+          @Override
+          public Converter<?, RequestBody> toRequestBody(Type type, Annotation[] annotations) {
+            lookups.incrementAndGet();
+            return mock(Converter.class);
+          }
+        })
+        .cacheConverters(true)
+        .build();
+    Annotation[] annotations = new Annotation[0];
+
+    // Array types of increasing dimension are distinct types.
+    List<Type> types = new ArrayList<>();
+    for (int i = 1; i <= 200; i++) {
+      types.add(Array.newInstance(String.class, new int[i]).getClass());
+      types.add(Array.newInstance(Integer.class, new int[i]).getClass());
+    }
+    for (Type type : types) {
+      retrofit.requestConverter(type, annotations);
+    }
+    assertThat(lookups.get()).isEqualTo(types.size());
+
+    retrofit.requestConverter(types.get(0), annotations);
+    assertThat(lookups.get()).isEqualTo(types.size()); // Cached.
+    retrofit.requestConverter(types.get(types.size() - 1), annotations);
+    assertThat(lookups.get()).isEqualTo(types.size() + 1); // Past the limit, so not cached.
+  }
+
   @Test public void converterFactoryPropagated() {
     Converter.Factory factory = mock(Converter.Factory.class);
     Retrofit retrofit = new Retrofit.Builder()